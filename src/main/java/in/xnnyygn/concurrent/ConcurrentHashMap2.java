@@ -1,166 +1,513 @@
 package in.xnnyygn.concurrent;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+// bins + linked list, like ConcurrentHashMap in JDK 8 without tree bins
+// empty bin is filled by CAS, non-empty bin is locked by its head node.
+// resize moves bins from the end of old table in strides, a moved bin is replaced with a forwarding node,
+// threads see the forwarding node help moving the rest.
 public class ConcurrentHashMap2<K, V> {
 
-//    private static final int MAX_CAPACITY = 1 << 30;
-//    private final double factor;
-//    private volatile Table<K, V> table;
-//
-//    public ConcurrentHashMap2() {
-//        this(16, 0.75f);
-//    }
-//
-//    @SuppressWarnings("unchecked")
-//    public ConcurrentHashMap2(int capacity, double factor) {
-//        if (capacity <= 0 || capacity > MAX_CAPACITY) {
-//            throw new IllegalArgumentException("capacity <= 0");
-//        }
-//        if (factor <= 0) {
-//            throw new IllegalArgumentException("threshold <= 0");
-//        }
-//        this.factor = factor;
-//        this.table = new Table<>(evaluateCapacity(capacity));
-//    }
-//
-//    private static int evaluateCapacity(int capacity) {
-//        int numberWithHighestBit = Integer.highestOneBit(capacity);
-//        return numberWithHighestBit == capacity ? numberWithHighestBit : numberWithHighestBit << 1;
-//    }
-//
-//    public V put(K key, V value) {
-//        ensureCapacityFactor();
-//        return table.put(key, value);
-//    }
-//
-//    @SuppressWarnings("unchecked")
-//    private void ensureCapacityFactor() {
-//        int capacity = table.capacity();
-//        if (capacity == MAX_CAPACITY || table.size() < capacity * factor) {
-//            return;
-//        }
-//        Table<K, V> newTable = new Table<>(capacity << 1);
-//        Entry<K, V> entry;
-//        for (int i = 0; i < table.capacity(); i++) {
-//            entry = table.entry(i);
-//            while (entry != null) {
-//                newTable.put(entry.key, entry.value);
-//                entry = entry.next;
-//            }
-//        }
-//        table = newTable;
-//    }
-//
-//    public V get(K key) {
-//        return table.get(key);
-//    }
-//
-//    public V remove(K key) {
-//        return table.remove(key);
-//    }
-//
-//    private static class Table<K, V> {
-//
-//        private final AtomicReferenceArray<Entry<K, V>> atomicEntries;
-//
-//        @SuppressWarnings("unchecked")
-//        Table(int capacity) {
-//            this.atomicEntries = new AtomicReferenceArray<>(capacity);
-//        }
-//
-//        V put(K key, V value) {
-//            int index = entryIndex(key);
-//            Entry<K, V> entry = atomicEntries.get(index);
-//            if (entry == null) {
-//                if (atomicEntries.compareAndSet(index, null, new Entry<>(key, value))) {
-//                    return null;
-//                }
-//                // other thread inserts some entry
-//            }
-//            V previousValue;
-//            while(true){
-//                entry = atomicEntries.get(index);
-//                if (entry.key.equals(key)) {
-//                    previousValue = entry.value;
-//                    entry.value = value;
-//                    break;
-//                }
-//                if (!entry.hasNext()) {
-//                    previousValue = null;
-//                    entry.next = new Entry<>(key, value);
-//                    break;
-//                }
-//                entry = entry.next;
-//            }
-//            return previousValue;
-//        }
-//
-//        private int entryIndex(K key) {
-//            if (key == null) {
-//                throw new IllegalArgumentException("key is null");
-//            }
-//            return key.hashCode() & (entries.length - 1);
-//        }
-//
-//        int capacity() {
-//            return entries.length;
-//        }
-//
-//        Entry<K, V> entry(int index) {
-//            return entries[index];
-//        }
-//
-//        V get(K key) {
-//            Entry<K, V> entry = entries[entryIndex(key)];
-//            while (entry != null) {
-//                if (entry.key.equals(key)) {
-//                    return entry.value;
-//                }
-//                entry = entry.next;
-//            }
-//            return null;
-//        }
-//
-//        V remove(K key) {
-//            int index = entryIndex(key);
-//            Entry<K, V> entry = entries[index];
-//            V previousValue = null;
-//            Entry<K, V> predecessorEntry = null;
-//            while (entry != null) {
-//                if (entry.key.equals(key)) {
-//                    previousValue = entry.value;
-//                    if (predecessorEntry != null) {
-//                        predecessorEntry.next = entry.next;
-//                    } else {
-//                        entries[index] = entry.next;
-//                    }
-//                    break;
-//                }
-//                predecessorEntry = entry;
-//                entry = entry.next;
-//            }
-//            return previousValue;
-//        }
-//
-//    }
-//
-//    private static class Entry<K, V> {
-//
-//        private final K key;
-//        private volatile V value;
-//        private final AtomicReference<Entry<K, V>> atomicNext = new AtomicReference<>();
-//
-//        Entry(K key, V value) {
-//            this.key = key;
-//            this.value = value;
-//        }
-//
-//        boolean hasNext() {
-//            return atomicNext.get() != null;
-//        }
-//
-//    }
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    private static final int RESIZE_STAMP_BITS = 16;
+    private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+    private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    // special hash of nodes
+    private static final int MOVED = -1;
+    private static final int RESERVED = -3;
+    private static final int HASH_BITS = 0x7fffffff;
+
+    private final double factor;
+    private final LongAdder count = new LongAdder();
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private volatile AtomicReferenceArray<Node<K, V>> nextTable;
+    // next index to split in old table when resizing
+    private final AtomicInteger transferIndex = new AtomicInteger();
+    // threshold of next resize, or negative when resizing: resize stamp in higher bits, (1 + number of resizers) in lower bits
+    private final AtomicInteger sizeCtl;
+
+    public ConcurrentHashMap2() {
+        this(16, 0.75f);
+    }
+
+    public ConcurrentHashMap2(int capacity, double factor) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        if (factor <= 0) {
+            throw new IllegalArgumentException("threshold <= 0");
+        }
+        this.factor = factor;
+        int n = evaluateCapacity(capacity);
+        this.table = new AtomicReferenceArray<>(n);
+        this.sizeCtl = new AtomicInteger(threshold(n));
+    }
+
+    private static int evaluateCapacity(int capacity) {
+        int numberWithHighestBit = Integer.highestOneBit(capacity);
+        return numberWithHighestBit == capacity ? numberWithHighestBit : numberWithHighestBit << 1;
+    }
+
+    private int threshold(int capacity) {
+        return capacity == MAX_CAPACITY ? Integer.MAX_VALUE : (int) Math.min(capacity * factor, Integer.MAX_VALUE);
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
+
+    private static int resizeStamp(int n) {
+        return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_BITS - 1));
+    }
+
+    private static void checkKey(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null");
+        }
+    }
+
+    public V get(K key) {
+        checkKey(key);
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        Node<K, V> e = tab.get((tab.length() - 1) & h);
+        if (e == null) {
+            return null;
+        }
+        int eh = e.hash;
+        if (eh == h && e.key.equals(key)) {
+            return e.value;
+        }
+        if (eh < 0) {
+            // forwarding or reservation
+            Node<K, V> p = e.find(h, key);
+            return p != null ? p.value : null;
+        }
+        while ((e = e.next) != null) {
+            if (e.hash == h && e.key.equals(key)) {
+                return e.value;
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    public V put(K key, V value) {
+        return putValue(key, value, false);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putValue(key, value, true);
+    }
+
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        checkKey(key);
+        if (value == null) {
+            throw new IllegalArgumentException("value is null");
+        }
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            int i = (tab.length() - 1) & h;
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                if (tab.compareAndSet(i, null, new Node<>(h, key, value, null))) {
+                    break;
+                }
+                // other thread installs the head, retry
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, f);
+            } else if (onlyIfAbsent && f.hash == h && f.key.equals(key)) {
+                // check first node without lock
+                return f.value;
+            } else {
+                V previousValue = null;
+                boolean done = false;
+                synchronized (f) {
+                    if (tab.get(i) == f && f.hash >= 0) {
+                        done = true;
+                        Node<K, V> e = f;
+                        while (true) {
+                            if (e.hash == h && e.key.equals(key)) {
+                                previousValue = e.value;
+                                if (!onlyIfAbsent) {
+                                    e.value = value;
+                                }
+                                break;
+                            }
+                            if (e.next == null) {
+                                e.next = new Node<>(h, key, value, null);
+                                break;
+                            }
+                            e = e.next;
+                        }
+                    }
+                }
+                if (done) {
+                    if (previousValue != null) {
+                        return previousValue;
+                    }
+                    break;
+                }
+                // head changed while waiting for lock, retry
+            }
+        }
+        addCount(1L, true);
+        return null;
+    }
+
+    /**
+     * Get value of key, or compute and put if absent.
+     * Function is called at most once, while the bin is locked, so it should be short and must not update this map.
+     *
+     * @return current or computed value, or null if function returns null
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        checkKey(key);
+        if (function == null) {
+            throw new IllegalArgumentException("function is null");
+        }
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        V value = null;
+        boolean added = false;
+        while (true) {
+            int i = (tab.length() - 1) & h;
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                // reserve the empty bin, other writers of this bin wait on the reservation node
+                Node<K, V> r = new ReservationNode<>();
+                synchronized (r) {
+                    if (tab.compareAndSet(i, null, r)) {
+                        Node<K, V> node = null;
+                        try {
+                            if ((value = function.apply(key)) != null) {
+                                node = new Node<>(h, key, value, null);
+                                added = true;
+                            }
+                        } finally {
+                            tab.set(i, node);
+                        }
+                        break;
+                    }
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, f);
+            } else if (f.hash == h && f.key.equals(key)) {
+                return f.value;
+            } else {
+                boolean done = false;
+                synchronized (f) {
+                    if (tab.get(i) == f && f.hash >= 0) {
+                        done = true;
+                        Node<K, V> e = f;
+                        while (true) {
+                            if (e.hash == h && e.key.equals(key)) {
+                                value = e.value;
+                                break;
+                            }
+                            if (e.next == null) {
+                                if ((value = function.apply(key)) != null) {
+                                    e.next = new Node<>(h, key, value, null);
+                                    added = true;
+                                }
+                                break;
+                            }
+                            e = e.next;
+                        }
+                    }
+                }
+                if (done) {
+                    break;
+                }
+            }
+        }
+        if (added) {
+            addCount(1L, true);
+        }
+        return value;
+    }
+
+    public V remove(K key) {
+        checkKey(key);
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        while (true) {
+            int i = (tab.length() - 1) & h;
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                return null;
+            }
+            if (f.hash == MOVED) {
+                tab = helpTransfer(tab, f);
+                continue;
+            }
+            V previousValue = null;
+            boolean done = false;
+            synchronized (f) {
+                if (tab.get(i) == f && f.hash >= 0) {
+                    done = true;
+                    Node<K, V> predecessor = null;
+                    for (Node<K, V> e = f; e != null; predecessor = e, e = e.next) {
+                        if (e.hash == h && e.key.equals(key)) {
+                            previousValue = e.value;
+                            if (predecessor != null) {
+                                predecessor.next = e.next;
+                            } else {
+                                tab.set(i, e.next);
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+            if (done) {
+                if (previousValue != null) {
+                    addCount(-1L, false);
+                }
+                return previousValue;
+            }
+        }
+    }
+
+    public int size() {
+        long n = count.sum();
+        return n < 0L ? 0 : (n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n);
+    }
+
+    int capacity() {
+        return table.length();
+    }
+
+    private void addCount(long x, boolean check) {
+        count.add(x);
+        if (!check) {
+            return;
+        }
+        AtomicReferenceArray<Node<K, V>> tab;
+        AtomicReferenceArray<Node<K, V>> nt;
+        int n;
+        int sc;
+        long s = count.sum();
+        while (s >= (long) (sc = sizeCtl.get()) && (n = (tab = table).length()) < MAX_CAPACITY) {
+            int rs = resizeStamp(n) << RESIZE_STAMP_SHIFT;
+            if (sc < 0) {
+                // resizing, join if not finishing
+                if (sc == rs + MAX_RESIZERS || sc == rs + 1 || (nt = nextTable) == null || transferIndex.get() <= 0) {
+                    break;
+                }
+                if (sizeCtl.compareAndSet(sc, sc + 1)) {
+                    transfer(tab, nt);
+                }
+            } else if (sizeCtl.compareAndSet(sc, rs + 2)) {
+                transfer(tab, null);
+            }
+            s = count.sum();
+        }
+    }
+
+    private AtomicReferenceArray<Node<K, V>> helpTransfer(AtomicReferenceArray<Node<K, V>> tab, Node<K, V> f) {
+        AtomicReferenceArray<Node<K, V>> nextTab = ((ForwardingNode<K, V>) f).nextTable;
+        int rs = resizeStamp(tab.length()) << RESIZE_STAMP_SHIFT;
+        int sc;
+        while (nextTab == nextTable && table == tab && (sc = sizeCtl.get()) < 0) {
+            if (sc == rs + MAX_RESIZERS || sc == rs + 1 || transferIndex.get() <= 0) {
+                break;
+            }
+            if (sizeCtl.compareAndSet(sc, sc + 1)) {
+                transfer(tab, nextTab);
+                break;
+            }
+        }
+        return nextTab;
+    }
+
+    private void transfer(AtomicReferenceArray<Node<K, V>> tab, AtomicReferenceArray<Node<K, V>> nextTab) {
+        int n = tab.length();
+        int stride = (NCPU > 1) ? (n >>> 3) / NCPU : n;
+        if (stride < MIN_TRANSFER_STRIDE) {
+            stride = MIN_TRANSFER_STRIDE;
+        }
+        if (nextTab == null) {
+            // first resizer
+            nextTab = new AtomicReferenceArray<>(n << 1);
+            nextTable = nextTab;
+            transferIndex.set(n);
+        }
+        int nextN = nextTab.length();
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(nextTab);
+        boolean advance = true;
+        boolean finishing = false;
+        for (int i = 0, bound = 0; ; ) {
+            // claim next bin, or next stride of bins
+            while (advance) {
+                int nextIndex;
+                if (--i >= bound || finishing) {
+                    advance = false;
+                } else if ((nextIndex = transferIndex.get()) <= 0) {
+                    i = -1;
+                    advance = false;
+                } else {
+                    int nextBound = nextIndex > stride ? nextIndex - stride : 0;
+                    if (transferIndex.compareAndSet(nextIndex, nextBound)) {
+                        bound = nextBound;
+                        i = nextIndex - 1;
+                        advance = false;
+                    }
+                }
+            }
+            if (i < 0 || i >= n || i + n >= nextN) {
+                if (finishing) {
+                    nextTable = null;
+                    table = nextTab;
+                    sizeCtl.set(threshold(nextN));
+                    return;
+                }
+                int sc = sizeCtl.get();
+                if (sizeCtl.compareAndSet(sc, sc - 1)) {
+                    if ((sc - 2) != resizeStamp(n) << RESIZE_STAMP_SHIFT) {
+                        // not the last resizer
+                        return;
+                    }
+                    // last one rechecks all bins before commit
+                    finishing = advance = true;
+                    i = n;
+                }
+                continue;
+            }
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                advance = tab.compareAndSet(i, null, fwd);
+            } else if (f.hash == MOVED) {
+                // already moved
+                advance = true;
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) == f && f.hash >= 0) {
+                        splitBin(tab, nextTab, i, n, f, fwd);
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // split bin i to bin i and i + n of next table, bin is locked
+    private void splitBin(AtomicReferenceArray<Node<K, V>> tab, AtomicReferenceArray<Node<K, V>> nextTab,
+                          int i, int n, Node<K, V> f, ForwardingNode<K, V> fwd) {
+        // reuse the tail in which all nodes go to the same bin
+        int runBit = f.hash & n;
+        Node<K, V> lastRun = f;
+        for (Node<K, V> p = f.next; p != null; p = p.next) {
+            int b = p.hash & n;
+            if (b != runBit) {
+                runBit = b;
+                lastRun = p;
+            }
+        }
+        Node<K, V> ln = (runBit == 0) ? lastRun : null;
+        Node<K, V> hn = (runBit != 0) ? lastRun : null;
+        // copy nodes before the tail, readers may still be traversing the old list
+        for (Node<K, V> p = f; p != lastRun; p = p.next) {
+            if ((p.hash & n) == 0) {
+                ln = new Node<>(p.hash, p.key, p.value, ln);
+            } else {
+                hn = new Node<>(p.hash, p.key, p.value, hn);
+            }
+        }
+        nextTab.set(i, ln);
+        nextTab.set(i + n, hn);
+        tab.set(i, fwd);
+    }
+
+    private static class Node<K, V> {
+
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        Node<K, V> find(int h, Object k) {
+            Node<K, V> e = this;
+            do {
+                if (e.hash == h && e.key.equals(k)) {
+                    return e;
+                }
+            } while ((e = e.next) != null);
+            return null;
+        }
+
+    }
+
+    // head of a moved bin
+    private static class ForwardingNode<K, V> extends Node<K, V> {
+
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+
+        @Override
+        Node<K, V> find(int h, Object k) {
+            AtomicReferenceArray<Node<K, V>> tab = nextTable;
+            outer:
+            while (true) {
+                Node<K, V> e = tab.get((tab.length() - 1) & h);
+                if (e == null) {
+                    return null;
+                }
+                while (true) {
+                    int eh = e.hash;
+                    if (eh == h && e.key.equals(k)) {
+                        return e;
+                    }
+                    if (eh < 0) {
+                        if (e instanceof ForwardingNode) {
+                            // resized again
+                            tab = ((ForwardingNode<K, V>) e).nextTable;
+                            continue outer;
+                        }
+                        return e.find(h, k);
+                    }
+                    if ((e = e.next) == null) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+    }
+
+    // placeholder of empty bin in computeIfAbsent
+    private static class ReservationNode<K, V> extends Node<K, V> {
+
+        ReservationNode() {
+            super(RESERVED, null, null, null);
+        }
+
+        @Override
+        Node<K, V> find(int h, Object k) {
+            return null;
+        }
+
+    }
 
 }
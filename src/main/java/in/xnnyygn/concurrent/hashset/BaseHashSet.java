@@ -1,35 +1,50 @@
 package in.xnnyygn.concurrent.hashset;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // closed-address
 public abstract class BaseHashSet<T> {
 
-    protected List<T>[] table;
+    // old buckets moved per operation in incremental resize
+    private static final int MIGRATION_STEP = 4;
+
+    // read without lock by resize and policy
+    protected volatile BucketTable<T> table;
     protected int setSize; // ?
+    protected final ResizeMode resizeMode;
+    protected final BucketStorage bucketStorage;
+    // not null in incremental resize
+    private volatile Migration<T> migration;
 
-    @SuppressWarnings("unchecked")
     public BaseHashSet(int capacity) {
+        this(capacity, ResizeMode.STOP_THE_WORLD);
+    }
+
+    public BaseHashSet(int capacity, ResizeMode resizeMode) {
+        this(capacity, resizeMode, BucketStorage.LIST);
+    }
+
+    public BaseHashSet(int capacity, ResizeMode resizeMode, BucketStorage bucketStorage) {
         setSize = 0;
-        table = (List<T>[]) new List[capacity];
-        for (int i = 0; i < capacity; i++) {
-            table[i] = new ArrayList<>();
-        }
+        table = bucketStorage.newTable(capacity);
+        this.resizeMode = resizeMode;
+        this.bucketStorage = bucketStorage;
     }
 
     public boolean add(T x) {
         boolean result;
+        int h = hash(x);
         acquire(x);
         try {
-            int bucketNo = x.hashCode() % table.length;
-            result = table[bucketNo].add(x);
+            BucketTable<T> t = tableOf(h);
+            result = t.add(h % t.length(), x, h);
             if (result) {
                 setSize++;
             }
         } finally {
             release(x);
         }
+        migrate();
         if (policy()) {
             resize();
         }
@@ -38,35 +53,134 @@ public abstract class BaseHashSet<T> {
 
     public boolean remove(T x) {
         boolean result;
+        int h = hash(x);
         acquire(x);
         try {
-            int bucketNo = x.hashCode() % table.length;
-            result = table[bucketNo].remove(x);
+            BucketTable<T> t = tableOf(h);
+            result = t.remove(h % t.length(), x, h);
             if (result) {
                 setSize--;
             }
         } finally {
             release(x);
         }
+        migrate();
         return result;
     }
 
     public boolean contains(T x) {
+        boolean result;
+        int h = hash(x);
         acquire(x);
         try {
-            int bucketNo = x.hashCode() % table.length;
-            return table[bucketNo].contains(x);
+            BucketTable<T> t = tableOf(h);
+            result = t.contains(h % t.length(), x, h);
         } finally {
             release(x);
         }
+        migrate();
+        return result;
+    }
+
+    protected static int hash(Object x) {
+        return x.hashCode() & 0x7FFFFFFF;
+    }
+
+    // lock of hash is held
+    private BucketTable<T> tableOf(int h) {
+        Migration<T> m = migration;
+        if (m != null && !m.moved[h % m.oldTable.length()]) {
+            return m.oldTable;
+        }
+        return table;
+    }
+
+    /**
+     * Stop-the-world resize, no operation is in progress.
+     */
+    protected void doubleTable() {
+        BucketTable<T> oldTable = table;
+        BucketTable<T> newTable = bucketStorage.newTable(oldTable.length() * 2);
+        for (int i = 0; i < oldTable.length(); i++) {
+            oldTable.forEach(i, (x, h) -> newTable.add(h % newTable.length(), x, h));
+        }
+        table = newTable;
+    }
+
+    /**
+     * Start incremental resize, no operation is in progress.
+     */
+    protected void startMigration() {
+        BucketTable<T> oldTable = table;
+        table = bucketStorage.newTable(oldTable.length() * 2);
+        migration = new Migration<>(oldTable);
+    }
+
+    protected boolean isMigrating() {
+        return migration != null;
+    }
+
+    // move some old buckets, no lock is held
+    private void migrate() {
+        Migration<T> m = migration;
+        if (m == null) {
+            return;
+        }
+        for (int i = 0; i < MIGRATION_STEP; i++) {
+            int index = m.nextIndex.getAndIncrement();
+            if (index >= m.oldTable.length()) {
+                return;
+            }
+            acquireBucket(index);
+            try {
+                migrateBucket(m, index);
+            } finally {
+                releaseBucket(index);
+            }
+        }
+    }
+
+    // lock of old bucket is held, it is also the lock of new bucket index and index + oldTable.length()
+    private void migrateBucket(Migration<T> m, int index) {
+        BucketTable<T> newTable = table;
+        m.oldTable.forEach(index, (x, h) -> newTable.add(h % newTable.length(), x, h));
+        m.moved[index] = true;
+        if (m.movedCount.incrementAndGet() == m.oldTable.length()) {
+            migration = null;
+        }
     }
 
     protected abstract void acquire(T x);
 
     protected abstract void release(T x);
 
+    /**
+     * Acquire lock of bucket, the one {@link #acquire(Object)} takes for items of hash {@code index}.
+     * Lock of bucket must also protect bucket {@code index} and {@code index + table.length()} after table doubles,
+     * as required by incremental resize.
+     */
+    protected abstract void acquireBucket(int index);
+
+    protected abstract void releaseBucket(int index);
+
     protected abstract boolean policy();
 
     protected abstract void resize();
 
+    // each old bucket is claimed by exactly one thread
+    private static class Migration<T> {
+
+        final BucketTable<T> oldTable;
+        // guarded by lock of bucket
+        final boolean[] moved;
+        final AtomicInteger nextIndex = new AtomicInteger(0);
+        final AtomicInteger movedCount = new AtomicInteger(0);
+
+        Migration(BucketTable<T> oldTable) {
+            this.oldTable = oldTable;
+            this.moved = new boolean[oldTable.length()];
+        }
+
+    }
+
 }
@@ -0,0 +1,23 @@
+package in.xnnyygn.concurrent.hashset;
+
+public enum BucketStorage {
+
+    // list per bucket
+    LIST {
+        @Override
+        public <T> BucketTable<T> newTable(int length) {
+            return new ListBucketTable<>(length);
+        }
+    },
+
+    // fixed slots per bucket in flat arrays with cached hash, list for overflow
+    INLINE {
+        @Override
+        public <T> BucketTable<T> newTable(int length) {
+            return new InlineBucketTable<>(length);
+        }
+    };
+
+    public abstract <T> BucketTable<T> newTable(int length);
+
+}
@@ -0,0 +1,25 @@
+package in.xnnyygn.concurrent.hashset;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Fixed number of buckets, caller selects bucket and holds the lock of it.
+ *
+ * @param <T>
+ */
+public interface BucketTable<T> {
+
+    int length();
+
+    boolean add(int bucket, T x, int hash);
+
+    boolean remove(int bucket, T x, int hash);
+
+    boolean contains(int bucket, T x, int hash);
+
+    /**
+     * Visit items of bucket with their hash, for rehashing.
+     */
+    void forEach(int bucket, ObjIntConsumer<T> consumer);
+
+}
@@ -0,0 +1,245 @@
+package in.xnnyygn.concurrent.hashset;
+
+/**
+ * Cuckoo hash set with 4 slots per bucket.
+ * <p>
+ * Each slot has a one-byte tag from the hash, the 4 tags of a bucket are packed in one int and compared
+ * at once, items are only touched when tag matches. Item is in one of its two buckets, a full bucket
+ * kicks a random victim to its other bucket. With 4 slots per bucket, the table is usually more than
+ * 90% full when insertion fails and table doubles, compared to about 50% of one slot per bucket.
+ * </p>
+ * <p>
+ * Not thread-safe, for a single thread or external synchronization. It is the sequential baseline of
+ * the concurrent cuckoo sets in this package, e.g. {@link StripedCuckooHashSet} and {@link LockFreeCuckooHashSet}.
+ * </p>
+ *
+ * @param <T>
+ */
+public class BucketizedCuckooHashSet<T> {
+
+    static final int SLOTS = 4;
+    private static final int MAX_KICKS = 500;
+    private static final int MAX_BUCKETS = 1 << 28;
+    private static final int LOW_BITS = 0x01010101;
+    private static final int HIGH_BITS = 0x80808080;
+
+    // tag of slot i in byte i, 0 is empty
+    private int[] tags;
+    // slot i of bucket b at b * SLOTS + i
+    private Object[] items;
+    private int mask;
+    private int size = 0;
+    // xorshift state for victim selection
+    private int seed = 0x2545F491;
+
+    /**
+     * Create set.
+     *
+     * @param capacity initial number of slots
+     */
+    public BucketizedCuckooHashSet(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        allocate(bucketsFor(capacity));
+    }
+
+    public boolean add(T x) {
+        if (x == null) {
+            throw new IllegalArgumentException("x required");
+        }
+        int h = hash(x);
+        int tag = tag(h);
+        if (indexOf(bucket0(h), tag, x) >= 0 || indexOf(bucket1(h), tag, x) >= 0) {
+            return false;
+        }
+        Object homeless = place(x, h);
+        if (homeless != null) {
+            rebuild(tags.length << 1, homeless);
+        }
+        size++;
+        return true;
+    }
+
+    public boolean remove(T x) {
+        if (x == null) {
+            throw new IllegalArgumentException("x required");
+        }
+        int h = hash(x);
+        int tag = tag(h);
+        int b = bucket0(h);
+        int slot = indexOf(b, tag, x);
+        if (slot < 0) {
+            b = bucket1(h);
+            slot = indexOf(b, tag, x);
+            if (slot < 0) {
+                return false;
+            }
+        }
+        setTag(b, slot, 0);
+        items[b * SLOTS + slot] = null;
+        size--;
+        return true;
+    }
+
+    public boolean contains(T x) {
+        if (x == null) {
+            throw new IllegalArgumentException("x required");
+        }
+        int h = hash(x);
+        int tag = tag(h);
+        return indexOf(bucket0(h), tag, x) >= 0 || indexOf(bucket1(h), tag, x) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // number of slots
+    int capacity() {
+        return tags.length * SLOTS;
+    }
+
+    /**
+     * Put item in one of its buckets, kicking other items.
+     *
+     * @return item without slot after {@code MAX_KICKS} kicks, or {@code null}
+     */
+    private Object place(Object x, int h) {
+        int b = bucket0(h);
+        int slot = freeSlot(b);
+        if (slot < 0) {
+            b = bucket1(h);
+            slot = freeSlot(b);
+        }
+        Object v = x;
+        int tag = tag(h);
+        for (int kicks = 0; slot < 0; kicks++) {
+            if (kicks == MAX_KICKS) {
+                return v;
+            }
+            slot = nextRandom() & (SLOTS - 1);
+            int index = b * SLOTS + slot;
+            Object victim = items[index];
+            items[index] = v;
+            setTag(b, slot, tag);
+            v = victim;
+            h = hash(v);
+            tag = tag(h);
+            b = (b == bucket0(h)) ? bucket1(h) : bucket0(h);
+            slot = freeSlot(b);
+        }
+        items[b * SLOTS + slot] = v;
+        setTag(b, slot, tag);
+        return null;
+    }
+
+    // rehash all items and extra item to a table of at least buckets
+    private void rebuild(int buckets, Object extra) {
+        int[] oldTags = tags;
+        Object[] oldItems = items;
+        retry:
+        while (true) {
+            if (buckets > MAX_BUCKETS) {
+                throw new IllegalStateException("too many buckets");
+            }
+            allocate(buckets);
+            if (place(extra, hash(extra)) != null) {
+                buckets <<= 1;
+                continue;
+            }
+            for (Object x : oldItems) {
+                if (x != null && place(x, hash(x)) != null) {
+                    buckets <<= 1;
+                    continue retry;
+                }
+            }
+            return;
+        }
+    }
+
+    private void allocate(int buckets) {
+        tags = new int[buckets];
+        items = new Object[buckets * SLOTS];
+        mask = buckets - 1;
+    }
+
+    // slot of x in bucket, or -1
+    private int indexOf(int b, int tag, Object x) {
+        int word = tags[b];
+        int m = match(word, tag);
+        while (m != 0) {
+            int slot = Integer.numberOfTrailingZeros(m) >>> 3;
+            // bytes above a matched byte may match falsely
+            if (((word >>> (slot << 3)) & 0xFF) == tag && x.equals(items[b * SLOTS + slot])) {
+                return slot;
+            }
+            m &= m - 1;
+        }
+        return -1;
+    }
+
+    // first empty slot, or -1
+    private int freeSlot(int b) {
+        int m = match(tags[b], 0);
+        // lowest match is always exact
+        return m == 0 ? -1 : Integer.numberOfTrailingZeros(m) >>> 3;
+    }
+
+    // high bit of each byte equal to tag, SWAR zero byte test
+    private static int match(int word, int tag) {
+        int x = word ^ (tag * LOW_BITS);
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+
+    private void setTag(int b, int slot, int tag) {
+        int shift = slot << 3;
+        tags[b] = (tags[b] & ~(0xFF << shift)) | (tag << shift);
+    }
+
+    private int bucket0(int h) {
+        return h & mask;
+    }
+
+    private int bucket1(int h) {
+        int g = h * 0x85EBCA6B;
+        return (g ^ (g >>> 15)) & mask;
+    }
+
+    private int nextRandom() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+
+    // top byte, never 0
+    private static int tag(int h) {
+        int t = h >>> 24;
+        return t == 0 ? 1 : t;
+    }
+
+    private static int hash(Object x) {
+        int h = x.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int bucketsFor(int capacity) {
+        int buckets = (capacity + SLOTS - 1) / SLOTS;
+        if (buckets >= MAX_BUCKETS) {
+            return MAX_BUCKETS;
+        }
+        int n = Integer.highestOneBit(buckets);
+        return n == buckets ? n : n << 1;
+    }
+
+    @Override
+    public String toString() {
+        return "BucketizedCuckooHashSet{" +
+                "size=" + size +
+                ", capacity=" + capacity() +
+                '}';
+    }
+}
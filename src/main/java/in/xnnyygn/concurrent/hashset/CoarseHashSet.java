@@ -1,7 +1,5 @@
 package in.xnnyygn.concurrent.hashset;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -24,35 +22,31 @@ public class CoarseHashSet<T> extends BaseHashSet<T> {
         lock.unlock();
     }
 
+    // one lock for all buckets
+    @Override
+    protected void acquireBucket(int index) {
+        lock.lock();
+    }
+
+    @Override
+    protected void releaseBucket(int index) {
+        lock.unlock();
+    }
+
     @Override
     protected boolean policy() {
-        return setSize / table.length > 4;
+        return setSize / table.length() > 4;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void resize() {
-        int oldCapacity = table.length;
+        int oldCapacity = table.length();
         lock.lock();
         try {
-            if (oldCapacity != table.length) {
+            if (oldCapacity != table.length()) {
                 return; // someone resized
             }
-            int newCapacity = oldCapacity * 2;
-            List<T>[] oldTable = table;
-
-            // initialize new table
-            table = (List<T>[]) new List[newCapacity];
-            for (int i = 0; i < newCapacity; i++) {
-                table[i] = new ArrayList<>();
-            }
-
-            // transfer elements
-            for (List<T> bucket : oldTable) {
-                for (T x : bucket) {
-                    table[x.hashCode() % table.length].add(x);
-                }
-            }
+            doubleTable();
         } finally {
             lock.unlock();
         }
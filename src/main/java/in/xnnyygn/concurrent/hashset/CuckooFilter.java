@@ -0,0 +1,277 @@
+package in.xnnyygn.concurrent.hashset;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent cuckoo filter by Fan et al., stores fingerprints only.
+ * <p>
+ * Bucket is one long of 4 lanes, each lane is 16 bits and holds a fingerprint or 0 if empty, so a probe
+ * reads two longs. Fingerprint of item may be in bucket {@code hash0} or {@code hash1}, the latter is computed
+ * from the former and fingerprint, so fingerprint can move without item. Buckets are changed by CAS.
+ * </p>
+ * <p>
+ * Relocation copies fingerprint to the other bucket before removing it, and counts moves,
+ * reader retries if any move happened during probe, so inserted item is never missed.
+ * Filter cannot resize, add returns false when no relocation path is found.
+ * </p>
+ *
+ * @param <T>
+ */
+public class CuckooFilter<T> {
+
+    static final int SLOTS = 4;
+    // max length of relocation path
+    static final int LIMIT = 500;
+    private static final int LANE_BITS = 16;
+    private static final int MAX_BUCKETS = 1 << 30;
+    private static final double MAX_LOAD_FACTOR = 0.95;
+    private static final long LOW_BITS = 0x0001000100010001L;
+    private static final long HIGH_BITS = 0x8000800080008000L;
+
+    private final AtomicLongArray buckets;
+    private final int mask;
+    private final int fingerprintBits;
+    private final int fingerprintMask;
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong moves = new AtomicLong(0);
+
+    /**
+     * Create filter.
+     *
+     * @param capacity          expected number of items
+     * @param falsePositiveRate false positive rate, fingerprint has {@code log2(2 * 4 / rate)} bits
+     */
+    public CuckooFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("false positive rate must be in (0, 1)");
+        }
+        fingerprintBits = fingerprintBits(falsePositiveRate);
+        if (fingerprintBits > LANE_BITS) {
+            throw new IllegalArgumentException("false positive rate too small, min " + (2.0 * SLOTS / (1 << LANE_BITS)));
+        }
+        fingerprintMask = (1 << fingerprintBits) - 1;
+        long n = (long) Math.ceil(capacity / (SLOTS * MAX_LOAD_FACTOR));
+        if (n > MAX_BUCKETS) {
+            throw new IllegalArgumentException("capacity too large");
+        }
+        int size = Integer.highestOneBit((int) n);
+        size = (size == n) ? size : size << 1;
+        buckets = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    static int fingerprintBits(double falsePositiveRate) {
+        return Math.max(1, (int) Math.ceil(Math.log(2.0 * SLOTS / falsePositiveRate) / Math.log(2)));
+    }
+
+    /**
+     * Add item, the same item may be added more than once.
+     *
+     * @return false if filter is full
+     */
+    public boolean add(T x) {
+        long z = hash(x);
+        int f = fingerprint(z);
+        int i0 = hash0(z);
+        int i1 = hash1(i0, f);
+        while (true) {
+            if (insert(i0, f) || insert(i1, f)) {
+                count.increment();
+                return true;
+            }
+            if (!relocate(ThreadLocalRandom.current().nextBoolean() ? i0 : i1)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Remove item, only items added before should be removed, otherwise other item may be removed.
+     * Retries like {@link #mightContain(Object)}, a fingerprint moving between the two deletes is not missed.
+     */
+    public boolean remove(T x) {
+        long z = hash(x);
+        int f = fingerprint(z);
+        int i0 = hash0(z);
+        int i1 = hash1(i0, f);
+        long m;
+        do {
+            m = moves.get();
+            if (delete(i0, f) || delete(i1, f)) {
+                count.decrement();
+                return true;
+            }
+        } while (moves.get() != m);
+        return false;
+    }
+
+    /**
+     * Test item.
+     *
+     * @return true if item may be added, false if not
+     */
+    public boolean mightContain(T x) {
+        long z = hash(x);
+        int f = fingerprint(z);
+        int i0 = hash0(z);
+        int i1 = hash1(i0, f);
+        long m;
+        do {
+            m = moves.get();
+            if (lane(buckets.get(i0), f) >= 0 || lane(buckets.get(i1), f) >= 0) {
+                return true;
+            }
+        } while (moves.get() != m);
+        return false;
+    }
+
+    public int size() {
+        long n = count.sum();
+        return n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
+    }
+
+    // number of slots
+    int capacity() {
+        return buckets.length() * SLOTS;
+    }
+
+    int fingerprintBits() {
+        return fingerprintBits;
+    }
+
+    /**
+     * Make room in bucket by a random walk, then move fingerprints from the end of path.
+     *
+     * @return true if bucket is possibly not full, false if path is too long
+     */
+    private boolean relocate(int start) {
+        int[] path = new int[LIMIT];
+        int[] fingerprints = new int[LIMIT];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        retry:
+        while (true) {
+            int depth = 0;
+            int b = start;
+            long word;
+            while (freeLane(word = buckets.get(b)) < 0) {
+                if (depth == LIMIT) {
+                    return false;
+                }
+                int f = (int) (word >>> (random.nextInt(SLOTS) * LANE_BITS)) & fingerprintMask;
+                path[depth] = b;
+                fingerprints[depth] = f;
+                depth++;
+                b = hash1(b, f);
+            }
+            for (int k = depth - 1; k >= 0; k--) {
+                if (!move(path[k], fingerprints[k])) {
+                    continue retry;
+                }
+            }
+            return true;
+        }
+    }
+
+    // copy then delete, fingerprint is always in one of its buckets
+    private boolean move(int b, int f) {
+        int other = hash1(b, f);
+        if (!insert(other, f)) {
+            return false;
+        }
+        moves.incrementAndGet();
+        if (delete(b, f)) {
+            return true;
+        }
+        // removed by others, undo copy
+        delete(other, f);
+        return false;
+    }
+
+    private boolean insert(int b, int f) {
+        long word;
+        int lane;
+        do {
+            word = buckets.get(b);
+            lane = freeLane(word);
+            if (lane < 0) {
+                return false;
+            }
+        } while (!buckets.compareAndSet(b, word, word | ((long) f << (lane * LANE_BITS))));
+        return true;
+    }
+
+    private boolean delete(int b, int f) {
+        long word;
+        int lane;
+        do {
+            word = buckets.get(b);
+            lane = lane(word, f);
+            if (lane < 0) {
+                return false;
+            }
+        } while (!buckets.compareAndSet(b, word, word & ~(0xFFFFL << (lane * LANE_BITS))));
+        return true;
+    }
+
+    // lane of fingerprint, or -1
+    private static int lane(long word, int f) {
+        long m = match(word, f);
+        while (m != 0) {
+            int lane = Long.numberOfTrailingZeros(m) >>> 4;
+            // lanes above a matched lane may match falsely
+            if (((word >>> (lane * LANE_BITS)) & 0xFFFF) == f) {
+                return lane;
+            }
+            m &= m - 1;
+        }
+        return -1;
+    }
+
+    // first empty lane, or -1, lowest match is always exact
+    private static int freeLane(long word) {
+        long m = match(word, 0);
+        return m == 0 ? -1 : Long.numberOfTrailingZeros(m) >>> 4;
+    }
+
+    // high bit of each lane equal to f, SWAR zero lane test
+    private static long match(long word, int f) {
+        long x = word ^ (f * LOW_BITS);
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+
+    private int hash0(long z) {
+        return (int) z & mask;
+    }
+
+    // alternative bucket of fingerprint, hash1(hash1(i, f), f) == i
+    private int hash1(int i, int f) {
+        return (i ^ (f * 0x5BD1E995)) & mask;
+    }
+
+    // high bits, never 0
+    private int fingerprint(long z) {
+        int f = (int) (z >>> 40) & fingerprintMask;
+        return f == 0 ? 1 : f;
+    }
+
+    private static long hash(Object x) {
+        long z = x.hashCode() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return "CuckooFilter{" +
+                "size=" + size() +
+                ", capacity=" + capacity() +
+                ", fingerprintBits=" + fingerprintBits +
+                '}';
+    }
+}
@@ -0,0 +1,119 @@
+package in.xnnyygn.concurrent.hashset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+// bucket i takes slot [i * WIDTH, (i + 1) * WIDTH) of flat arrays.
+// tag is hash with the highest bit set, 0 for empty slot, so a lookup scans tags and calls equals only on same hash.
+// occupied slots are always at the front of bucket, overflow list is used only when all slots are occupied.
+class InlineBucketTable<T> implements BucketTable<T> {
+
+    // 8 tags take half of a cache line
+    static final int WIDTH = 8;
+    private static final int TAG_BIT = Integer.MIN_VALUE;
+
+    private final int length;
+    private final int[] tags;
+    private final Object[] items;
+    // allocated up front, buckets of different stripes overflow concurrently
+    private final List<T>[] overflows;
+
+    @SuppressWarnings("unchecked")
+    InlineBucketTable(int length) {
+        this.length = length;
+        this.tags = new int[length * WIDTH];
+        this.items = new Object[length * WIDTH];
+        this.overflows = (List<T>[]) new List[length];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    // return slot of x, or -1 if not in slots
+    private int indexOf(int bucket, T x, int tag) {
+        for (int i = bucket * WIDTH, end = i + WIDTH; i < end; i++) {
+            int t = tags[i];
+            if (t == 0) {
+                break;
+            }
+            if (t == tag && x.equals(items[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(int bucket, T x, int hash) {
+        if (indexOf(bucket, x, hash | TAG_BIT) >= 0) {
+            return true;
+        }
+        List<T> overflow = overflows[bucket];
+        return overflow != null && overflow.contains(x);
+    }
+
+    @Override
+    public boolean add(int bucket, T x, int hash) {
+        if (contains(bucket, x, hash)) {
+            return false;
+        }
+        for (int i = bucket * WIDTH, end = i + WIDTH; i < end; i++) {
+            if (tags[i] == 0) {
+                tags[i] = hash | TAG_BIT;
+                items[i] = x;
+                return true;
+            }
+        }
+        List<T> overflow = overflows[bucket];
+        if (overflow == null) {
+            overflow = new ArrayList<>();
+            overflows[bucket] = overflow;
+        }
+        return overflow.add(x);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(int bucket, T x, int hash) {
+        int index = indexOf(bucket, x, hash | TAG_BIT);
+        List<T> overflow = overflows[bucket];
+        if (index < 0) {
+            return overflow != null && overflow.remove(x);
+        }
+        if (overflow != null && !overflow.isEmpty()) {
+            // slots stay full, move one item back from overflow
+            T y = overflow.remove(overflow.size() - 1);
+            tags[index] = BaseHashSet.hash(y) | TAG_BIT;
+            items[index] = y;
+            return true;
+        }
+        // fill the hole with the last occupied slot
+        int last = index;
+        for (int end = bucket * WIDTH + WIDTH; last + 1 < end && tags[last + 1] != 0; ) {
+            last++;
+        }
+        tags[index] = tags[last];
+        items[index] = items[last];
+        tags[last] = 0;
+        items[last] = null;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(int bucket, ObjIntConsumer<T> consumer) {
+        for (int i = bucket * WIDTH, end = i + WIDTH; i < end && tags[i] != 0; i++) {
+            consumer.accept((T) items[i], tags[i] & ~TAG_BIT);
+        }
+        List<T> overflow = overflows[bucket];
+        if (overflow != null) {
+            for (T x : overflow) {
+                consumer.accept(x, BaseHashSet.hash(x));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package in.xnnyygn.concurrent.hashset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+// list is created on first add
+class ListBucketTable<T> implements BucketTable<T> {
+
+    private final List<T>[] buckets;
+
+    @SuppressWarnings("unchecked")
+    ListBucketTable(int length) {
+        buckets = (List<T>[]) new List[length];
+    }
+
+    @Override
+    public int length() {
+        return buckets.length;
+    }
+
+    @Override
+    public boolean add(int bucket, T x, int hash) {
+        List<T> list = buckets[bucket];
+        if (list == null) {
+            list = new ArrayList<>();
+            buckets[bucket] = list;
+        } else if (list.contains(x)) {
+            return false;
+        }
+        return list.add(x);
+    }
+
+    @Override
+    public boolean remove(int bucket, T x, int hash) {
+        List<T> list = buckets[bucket];
+        return list != null && list.remove(x);
+    }
+
+    @Override
+    public boolean contains(int bucket, T x, int hash) {
+        List<T> list = buckets[bucket];
+        return list != null && list.contains(x);
+    }
+
+    @Override
+    public void forEach(int bucket, ObjIntConsumer<T> consumer) {
+        List<T> list = buckets[bucket];
+        if (list != null) {
+            for (T x : list) {
+                consumer.accept(x, BaseHashSet.hash(x));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package in.xnnyygn.concurrent.hashset;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free cuckoo hash set with two tables, after Nguyen and Tsigas.
+ * <p>
+ * An item moves to its slot in the other table in steps, each done by CAS:
+ * <ol>
+ * <li>claim the empty destination slot</li>
+ * <li>mark the source slot as moved</li>
+ * <li>replace the claim with the item</li>
+ * <li>empty the source slot</li>
+ * </ol>
+ * Any thread seeing a claim or a moved mark helps to finish the move, or aborts the claim if the source
+ * changed before step 2. Lookup reads the two slots of item, then rereads the first one,
+ * if it is not changed, the item was absent when the second slot was read.
+ * </p>
+ * <p>
+ * New items only go to the first table, so concurrent adds of the same item conflict on the same slot.
+ * Capacity is fixed, add fails with {@link IllegalStateException} if no relocation path is found.
+ * </p>
+ *
+ * @param <T>
+ */
+public class LockFreeCuckooHashSet<T> {
+
+    // max length of relocation path
+    static final int LIMIT = 32;
+
+    private static final int PLAIN = 0;
+    private static final int CLAIM = 1;
+    private static final int MOVED = 2;
+
+    private final AtomicReferenceArray<Slot<T>> table0;
+    private final AtomicReferenceArray<Slot<T>> table1;
+    private final int mask;
+
+    /**
+     * Create set.
+     *
+     * @param capacity slots per table
+     */
+    public LockFreeCuckooHashSet(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity <= 0 or capacity > 2^30");
+        }
+        int n = Integer.highestOneBit(capacity);
+        n = (n == capacity) ? n : n << 1;
+        table0 = new AtomicReferenceArray<>(n);
+        table1 = new AtomicReferenceArray<>(n);
+        mask = n - 1;
+    }
+
+    public boolean contains(T x) {
+        int h = hash(x);
+        int index0 = index(0, h);
+        int index1 = index(1, h);
+        Slot<T> s0;
+        Slot<T> s1;
+        while (true) {
+            s0 = table0.get(index0);
+            if (helpMove(s0, x)) {
+                continue;
+            }
+            if (isItem(s0, x, h)) {
+                return true;
+            }
+            s1 = table1.get(index1);
+            if (helpMove(s1, x)) {
+                continue;
+            }
+            if (isItem(s1, x, h)) {
+                return true;
+            }
+            if (table0.get(index0) == s0) {
+                return false;
+            }
+        }
+    }
+
+    public boolean add(T x) {
+        int h = hash(x);
+        int index0 = index(0, h);
+        int index1 = index(1, h);
+        Slot<T> s0;
+        Slot<T> s1;
+        while (true) {
+            s0 = table0.get(index0);
+            // slot 0 is the target, help any move there
+            if (s0 != null && s0.state != PLAIN) {
+                help(s0);
+                continue;
+            }
+            s1 = table1.get(index1);
+            if (helpMove(s1, x)) {
+                continue;
+            }
+            if (isItem(s0, x, h) || isItem(s1, x, h)) {
+                return false;
+            }
+            if (table0.get(index0) != s0) {
+                continue;
+            }
+            if (isEmpty(s0)) {
+                // slot 0 not changed since item was found absent
+                if (table0.compareAndSet(index0, s0, new Slot<>(x, h))) {
+                    return true;
+                }
+            } else if (!relocate(0, index0)) {
+                throw new IllegalStateException("no relocation path for " + x);
+            }
+        }
+    }
+
+    public boolean remove(T x) {
+        int h = hash(x);
+        int index0 = index(0, h);
+        int index1 = index(1, h);
+        Slot<T> s0;
+        Slot<T> s1;
+        while (true) {
+            s0 = table0.get(index0);
+            if (helpMove(s0, x)) {
+                continue;
+            }
+            if (isItem(s0, x, h)) {
+                if (table0.compareAndSet(index0, s0, new Slot<>(null, 0))) {
+                    return true;
+                }
+                continue;
+            }
+            s1 = table1.get(index1);
+            if (helpMove(s1, x)) {
+                continue;
+            }
+            if (isItem(s1, x, h)) {
+                if (table1.compareAndSet(index1, s1, new Slot<>(null, 0))) {
+                    return true;
+                }
+                continue;
+            }
+            if (table0.get(index0) == s0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Make room at slot by moving items along a cuckoo path, from the end of path.
+     *
+     * @return true if slot is possibly empty now, false if path is too long
+     */
+    private boolean relocate(int which, int index) {
+        int[] path = new int[LIMIT];
+        retry:
+        while (true) {
+            int depth = 0;
+            int t = which;
+            int i = index;
+            Slot<T> s;
+            while (!isEmpty(s = table(t).get(i))) {
+                if (s.state != PLAIN) {
+                    help(s);
+                    continue retry;
+                }
+                if (depth == LIMIT) {
+                    return false;
+                }
+                path[depth++] = i;
+                t = 1 - t;
+                i = index(t, s.hash);
+            }
+            for (int k = depth - 1; k >= 0; k--) {
+                int st = which ^ (k & 1);
+                s = table(st).get(path[k]);
+                if (s == null || s.state != PLAIN || s.item == null || !move(st, path[k], s)) {
+                    continue retry;
+                }
+            }
+            return true;
+        }
+    }
+
+    // move item in source slot to its slot in the other table
+    private boolean move(int which, int index, Slot<T> source) {
+        AtomicReferenceArray<Slot<T>> dst = table(1 - which);
+        int dstIndex = index(1 - which, source.hash);
+        Slot<T> d = dst.get(dstIndex);
+        if (!isEmpty(d)) {
+            return false;
+        }
+        Claim<T> claim = new Claim<>(source, which, index, dstIndex);
+        return dst.compareAndSet(dstIndex, d, claim) && complete(claim);
+    }
+
+    /**
+     * Finish or abort move.
+     *
+     * @return true if moved by this call
+     */
+    private boolean complete(Claim<T> claim) {
+        AtomicReferenceArray<Slot<T>> src = table(claim.srcTable);
+        AtomicReferenceArray<Slot<T>> dst = table(1 - claim.srcTable);
+        while (true) {
+            Slot<T> s = src.get(claim.srcIndex);
+            if (s == claim.source) {
+                Moved<T> moved = new Moved<>(claim);
+                if (!src.compareAndSet(claim.srcIndex, s, moved)) {
+                    continue;
+                }
+                s = moved;
+            }
+            if (s instanceof Moved && ((Moved<T>) s).claim == claim) {
+                dst.compareAndSet(claim.dstIndex, claim, new Slot<>(claim.item, claim.hash));
+                return src.compareAndSet(claim.srcIndex, s, new Slot<>(null, 0));
+            }
+            // claim is replaced only after source is marked, so source changed before marking if claim is still there
+            if (dst.get(claim.dstIndex) == claim) {
+                dst.compareAndSet(claim.dstIndex, claim, new Slot<>(null, 0));
+            }
+            return false;
+        }
+    }
+
+    // help move of x, return true if there is one
+    private boolean helpMove(Slot<T> s, T x) {
+        if (s != null && s.state != PLAIN && x.equals(s.item)) {
+            help(s);
+            return true;
+        }
+        return false;
+    }
+
+    private void help(Slot<T> s) {
+        if (s.state == CLAIM) {
+            complete((Claim<T>) s);
+        } else if (s.state == MOVED) {
+            complete(((Moved<T>) s).claim);
+        }
+    }
+
+    /**
+     * Count of items in table, not accurate under concurrent updates.
+     */
+    int count(int which) {
+        AtomicReferenceArray<Slot<T>> table = table(which);
+        int count = 0;
+        Slot<T> s;
+        for (int i = 0; i <= mask; i++) {
+            s = table.get(i);
+            if (s != null && s.state == PLAIN && s.item != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private AtomicReferenceArray<Slot<T>> table(int which) {
+        return which == 0 ? table0 : table1;
+    }
+
+    private int index(int which, int h) {
+        if (which == 0) {
+            return h & mask;
+        }
+        int g = h * 0x9E3779B9;
+        return (g ^ (g >>> 16)) & mask;
+    }
+
+    private static int hash(Object x) {
+        int h = x.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isEmpty(Slot<?> s) {
+        return s == null || (s.state == PLAIN && s.item == null);
+    }
+
+    private static <T> boolean isItem(Slot<T> s, T x, int h) {
+        return s != null && s.state == PLAIN && s.hash == h && x.equals(s.item);
+    }
+
+    // immutable, every change of slot installs a new one, so CAS never sees an old empty slot as current
+    private static class Slot<T> {
+        final T item;
+        final int hash;
+        final int state;
+
+        Slot(T item, int hash) {
+            this(item, hash, PLAIN);
+        }
+
+        Slot(T item, int hash, int state) {
+            this.item = item;
+            this.hash = hash;
+            this.state = state;
+        }
+    }
+
+    // in destination slot, item is still in source slot
+    private static class Claim<T> extends Slot<T> {
+        final Slot<T> source;
+        final int srcTable;
+        final int srcIndex;
+        final int dstIndex;
+
+        Claim(Slot<T> source, int srcTable, int srcIndex, int dstIndex) {
+            super(source.item, source.hash, CLAIM);
+            this.source = source;
+            this.srcTable = srcTable;
+            this.srcIndex = srcIndex;
+            this.dstIndex = dstIndex;
+        }
+    }
+
+    // in source slot, item is in destination slot
+    private static class Moved<T> extends Slot<T> {
+        final Claim<T> claim;
+
+        Moved(Claim<T> claim) {
+            super(claim.item, claim.hash, MOVED);
+            this.claim = claim;
+        }
+    }
+}
@@ -2,241 +2,228 @@ package in.xnnyygn.concurrent.hashset;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicMarkableReference;
-
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Split-ordered list by Shalev and Shavit.
+ * <p>
+ * All items are in one lock-free list ordered by bit-reversed hash. Buckets are shortcuts to sentinel nodes
+ * in the list, so doubling the bucket count moves no item. A new bucket is initialized lazily by inserting
+ * its sentinel after the sentinel of its parent bucket.
+ * </p>
+ *
+ * @param <T>
+ */
 public class LockFreeHashSet<T> {
 
-    private static final int MASK = 0x00FFFFFF;
-    private static final double LOAD_FACTOR_THRESHOLD = 2.0;
-    private final AtomicInteger atomicCapacity;
-    private final AtomicInteger atomicSize = new AtomicInteger(0);
-    //    private volatile BucketList<T>[] bucketLists;
-    private final DRoot<T> root = new DRoot<>();
+    private static final int MAX_BUCKETS = 1 << 30;
+    private static final int LOAD_FACTOR_THRESHOLD = 2;
+    private static final int HASH_BITS = 0x7FFFFFFF;
+    private static final int ORDINARY_KEY_MASK = 1;
 
-//    @SuppressWarnings("unchecked")
-//    public LockFreeHashSet(int capacity) {
-//        if (capacity <= 0) {
-//            throw new IllegalArgumentException("capacity <= 0");
-//        }
-//        bucketLists = (BucketList<T>[]) new BucketList[capacity];
-//        bucketLists[0] = new BucketList<>();
-//    }
+    private final AtomicInteger atomicBucketSize;
+    private final LongAdder count = new LongAdder();
+    // segment 0 holds bucket 0, segment k (k > 0) holds bucket [2^(k-1), 2^k), allocated on first use
+    private final AtomicReferenceArray<AtomicReferenceArray<Node<T>>> segments = new AtomicReferenceArray<>(32);
 
     public LockFreeHashSet(int capacity) {
-        atomicCapacity = new AtomicInteger(capacity);
+        if (capacity <= 0 || capacity > MAX_BUCKETS) {
+            throw new IllegalArgumentException("capacity <= 0 or capacity > " + MAX_BUCKETS);
+        }
+        int n = Integer.highestOneBit(capacity);
+        atomicBucketSize = new AtomicInteger(n == capacity ? n : n << 1);
+        setBucket(0, new Node<>(sentinelKey(0), null));
     }
 
     public boolean add(T x) {
-        int index = hashCode(x) % atomicCapacity.get();
-        if (!root.locate(index).add(x)) {
+        int h = hash(x);
+        // read bucket size once, any bucket not larger than current size is correct
+        int bucketSize = atomicBucketSize.get();
+        Node<T> node = new Node<>(ordinaryKey(h), x);
+        if (insert(bucket(h & (bucketSize - 1)), node) != node) {
             return false;
         }
-        double size = atomicSize.incrementAndGet();
-        int capacity = atomicCapacity.get();
-        if (size / capacity > LOAD_FACTOR_THRESHOLD) {
-            atomicCapacity.compareAndSet(capacity, capacity * 2);
+        count.increment();
+        if (bucketSize < MAX_BUCKETS && count.sum() > (long) bucketSize * LOAD_FACTOR_THRESHOLD) {
+            atomicBucketSize.compareAndSet(bucketSize, bucketSize << 1);
         }
         return true;
     }
 
     public boolean remove(T x) {
-        int index = hashCode(x) % atomicCapacity.get();
-        if (root.locate(index).remove(x)) {
-            atomicSize.decrementAndGet();
-            return true;
+        int h = hash(x);
+        int key = ordinaryKey(h);
+        Node<T> sentinel = bucket(h & (atomicBucketSize.get() - 1));
+        Window<T> window;
+        Node<T> successor;
+        while (true) {
+            window = find(sentinel, key, x);
+            if (window.current == null || window.current.key != key) {
+                return false;
+            }
+            successor = window.current.next.getReference();
+            // logical delete
+            if (window.current.next.compareAndSet(successor, successor, false, true)) {
+                // physical delete, fail is ok
+                window.predecessor.next.compareAndSet(window.current, successor, false, false);
+                count.decrement();
+                return true;
+            }
         }
-        return false;
     }
 
+    /**
+     * Wait-free, neither initializes buckets nor removes marked nodes.
+     */
     public boolean contains(T x) {
-        int index = hashCode(x) % atomicCapacity.get();
-        return root.locate(index).contains(x);
+        int h = hash(x);
+        int key = ordinaryKey(h);
+        int bucket = h & (atomicBucketSize.get() - 1);
+        Node<T> current = getBucket(bucket);
+        // start from the nearest initialized ancestor
+        while (current == null) {
+            bucket = parent(bucket);
+            current = getBucket(bucket);
+        }
+        while (current != null && isBefore(current, key, x)) {
+            current = current.next.getReference();
+        }
+        return current != null && current.key == key && !current.next.isMarked();
     }
 
     public int size() {
-        return atomicSize.get();
+        long n = count.sum();
+        return n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
     }
 
-    @SuppressWarnings("unchecked")
-//    private void resize() {
-//        int oldCapacity = capacity;
-//        if (atomicResizing.compareAndSet(false, true)) {
-//            return;
-//        }
-//        if (capacity != oldCapacity) {
-//            return;
-//        }
-//        int newCapacity = oldCapacity * 2;
-//        System.out.println("resize from " + oldCapacity + " to " + newCapacity);
-//        capacity = newCapacity;
-//        atomicResizing.set(false);
-//    }
-
-//    private BucketList<T> bucketList(int index) {
-//        BucketList<T> bucketList = bucketLists[index];
-//        if (bucketList == null) {
-//            BucketList<T> parentBucketList = bucketList(parent(index));
-//            bucketLists[index] = parentBucketList.subList(index);
-//        }
-//        return bucketLists[index];
-//    }
-
-//    private int parent(int index) {
-//        return index - Integer.highestOneBit(index);
-//    }
+    int bucketSize() {
+        return atomicBucketSize.get();
+    }
 
-//    @Override
-//    public String toString() {
-//        return "LockFreeHashSet{" +
-//                "size=" + atomicSize.get() +
-//                ", bucketLists=" + Arrays.toString(bucketLists) +
-//                '}';
-//    }
+    private Node<T> bucket(int bucket) {
+        Node<T> sentinel = getBucket(bucket);
+        return sentinel != null ? sentinel : initializeBucket(bucket);
+    }
 
-    private static class DRoot<T> {
-        private final DNode<T> left; // 0
-        private DNode<T> right; // 1
+    private Node<T> initializeBucket(int bucket) {
+        Node<T> parentSentinel = bucket(parent(bucket));
+        // threads initializing the same bucket get the same sentinel
+        Node<T> sentinel = insert(parentSentinel, new Node<>(sentinelKey(bucket), null));
+        setBucket(bucket, sentinel);
+        return sentinel;
+    }
 
-        DRoot() {
-            left = new DNode<>(0, new BucketList<>());
-        }
+    private Node<T> getBucket(int bucket) {
+        AtomicReferenceArray<Node<T>> segment = segments.get(segmentIndex(bucket));
+        return segment != null ? segment.get(segmentOffset(bucket)) : null;
+    }
 
-        BucketList<T> locate(int index) {
-            if (index < 0) {
-                throw new IllegalArgumentException("index < 0");
-            }
-            DNode<T> node = (index & 1) == 0 ? left : right();
-            return node.locate(index, 2);
+    private void setBucket(int bucket, Node<T> sentinel) {
+        int index = segmentIndex(bucket);
+        AtomicReferenceArray<Node<T>> segment = segments.get(index);
+        if (segment == null) {
+            segments.compareAndSet(index, null, new AtomicReferenceArray<>(index == 0 ? 1 : 1 << (index - 1)));
+            segment = segments.get(index);
         }
+        segment.set(segmentOffset(bucket), sentinel);
+    }
 
-        private DNode<T> right() {
-            if (right == null) {
-                right = new DNode<>(1, left.list.subList(1));
-            }
-            return right;
-        }
+    static int segmentIndex(int bucket) {
+        return 32 - Integer.numberOfLeadingZeros(bucket);
     }
 
-    private static class DNode<T> {
-        private final int index;
-        private final BucketList<T> list;
-        private DNode<T> left;
-        private DNode<T> right;
+    static int segmentOffset(int bucket) {
+        return bucket - Integer.highestOneBit(bucket);
+    }
 
-        DNode(int index, BucketList<T> list) {
-            this.index = index;
-            this.list = list;
-        }
+    // clear the highest bit
+    static int parent(int bucket) {
+        return bucket - Integer.highestOneBit(bucket);
+    }
 
-        BucketList<T> locate(int index, int mask) {
-            if (index == this.index) {
-                return list;
+    /**
+     * Insert node after start.
+     *
+     * @return node if inserted, otherwise existing node with same key and item
+     */
+    private Node<T> insert(Node<T> start, Node<T> node) {
+        Window<T> window;
+        while (true) {
+            window = find(start, node.key, node.item);
+            if (window.current != null && window.current.key == node.key) {
+                return window.current;
             }
-            if ((index & mask) == 0) {
-                return left().locate(index, mask << 1);
+            node.next.set(window.current, false);
+            if (window.predecessor.next.compareAndSet(window.current, node, false, false)) {
+                return node;
             }
-            return right(mask).locate(index, mask << 1);
         }
+    }
 
-        private DNode<T> left() {
-            if (left == null) {
-                left = new DNode<>(index, list);
-            }
-            return left;
-        }
+    // find first unmarked node not before key and item, remove marked nodes on the way
+    private Window<T> find(Node<T> start, int key, T item) {
+        boolean[] markedHolder = {false};
+        boolean snip;
 
-        private DNode<T> right(int mask) {
-            if (right == null) {
-                int i = this.index + mask;
-                right = new DNode<>(i, list.subList(i));
+        retry:
+        while (true) {
+            Node<T> predecessor = start;
+            Node<T> current = predecessor.next.getReference();
+            Node<T> successor;
+            while (current != null) {
+                successor = current.next.get(markedHolder);
+                if (markedHolder[0]) {
+                    snip = predecessor.next.compareAndSet(current, successor, false, false);
+                    if (!snip) {
+                        continue retry;
+                    }
+                } else if (isBefore(current, key, item)) {
+                    predecessor = current;
+                } else {
+                    break;
+                }
+                current = successor;
             }
-            return right;
+            return new Window<>(predecessor, current);
         }
     }
 
-    private static class BucketList<T> {
-        private final Node<T> head;
-
-        BucketList() {
-            head = new Node<>(0);
-            head.next = new AtomicMarkableReference<>(new Node<>(Integer.MAX_VALUE), false);
-        }
-
-        BucketList(Node<T> head) {
-            this.head = head;
-        }
+    // items with the same key but not equal are skipped, sentinel has no item
+    private static <T> boolean isBefore(Node<T> node, int key, T item) {
+        int c = Integer.compareUnsigned(node.key, key);
+        return c < 0 || (c == 0 && item != null && !item.equals(node.item));
+    }
 
-        boolean add(T x) {
-            int key = ordinaryKey(x.hashCode());
-            Window<T> window;
-            Node<T> node;
-            while (true) {
-                window = find(head, key);
-                if (window.current.key == key) {
-                    return false;
-                }
-                node = new Node<>(key, x);
-                node.next = new AtomicMarkableReference<>(window.current, false);
-                if (window.predecessor.casNext(window.current, node, false, false)) {
-                    return true;
-                }
-            }
-        }
+    static int hash(Object x) {
+        int h = x.hashCode();
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
 
-        boolean remove(T x) {
-            int key = ordinaryKey(x.hashCode());
-            Window<T> window;
-            while (true) {
-                window = find(head, key);
-                if (window.current.key != key) {
-                    return false;
-                }
-                if (window.predecessor.attemptMarkNext(window.current, true)) {
-                    return true;
-                }
-            }
-        }
+    // keys are compared as unsigned
+    static int ordinaryKey(int hash) {
+        return Integer.reverse(hash) | ORDINARY_KEY_MASK;
+    }
 
-        boolean contains(T x) {
-            int key = ordinaryKey(x.hashCode());
-            Window window = find(head, key);
-            return window.current.key == key;
-        }
+    static int sentinelKey(int bucket) {
+        return Integer.reverse(bucket);
+    }
 
-        BucketList<T> subList(int index) {
-            int key = sentinelKey(index);
-            Window<T> window;
-            Node<T> sentinel;
-            while (true) {
-                window = find(head, key);
-                if (window.current.key == key) {
-                    return new BucketList<>(window.current);
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("LockFreeHashSet{size=");
+        builder.append(size()).append(", bucketSize=").append(atomicBucketSize.get()).append(", items=[");
+        boolean first = true;
+        for (Node<T> node = getBucket(0).next.getReference(); node != null; node = node.next.getReference()) {
+            if (node.item != null && !node.next.isMarked()) {
+                if (!first) {
+                    builder.append(", ");
                 }
-                System.out.println("make sub list " + index);
-                sentinel = new Node<>(key);
-                sentinel.next = new AtomicMarkableReference<>(window.current, false);
-                // (current, false) -> (sentinel, false)
-                if (window.predecessor.casNext(window.current, sentinel, false, false)) {
-                    return new BucketList<>(sentinel);
-                }
-            }
-        }
-
-        Window<T> find(Node<T> start, int key) {
-            Node<T> predecessor = start;
-            Node<T> current = predecessor.nextUnmarked();
-            while (current.key < key) {
-                predecessor = current;
-                current = current.nextUnmarked();
+                builder.append(node.item);
+                first = false;
             }
-            return new Window<>(predecessor, current);
-        }
-
-        @Override
-        public String toString() {
-            return "BucketList{" +
-                    "head=" + head +
-                    '}';
         }
+        return builder.append("]}").toString();
     }
 
     private static class Window<T> {
@@ -251,95 +238,13 @@ public class LockFreeHashSet<T> {
 
     private static class Node<T> {
         private final int key;
-        private T value;
-        // next node reference and mark
-        private AtomicMarkableReference<Node<T>> next;
+        private final T item;
+        // next node reference and mark of this node
+        private final AtomicMarkableReference<Node<T>> next = new AtomicMarkableReference<>(null, false);
 
-        Node(int key) {
+        Node(int key, T item) {
             this.key = key;
+            this.item = item;
         }
-
-        Node(int key, T value) {
-            this.key = key;
-            this.value = value;
-        }
-
-        boolean attemptMarkNext(Node<T> expectedNext, boolean expectedMark) {
-            return next.attemptMark(expectedNext, expectedMark);
-        }
-
-        boolean casNext(Node<T> expectedNext, Node<T> updatedNext, boolean expectedMarked, boolean updatedMarked) {
-            return next.compareAndSet(expectedNext, updatedNext, expectedMarked, updatedMarked);
-        }
-
-        Node<T> nextUnmarked() {
-            // node 0 -> node 1 -> node 2
-            final Node<T> node0 = this;
-            boolean[] node1MarkedHolder = new boolean[1];
-            boolean[] node2MarkedHolder = new boolean[1];
-            Node<T> node1 = next.get(node1MarkedHolder);
-            Node<T> node2;
-            while (node1MarkedHolder[0]) {
-                node2 = node1.next.get(node2MarkedHolder);
-                // (node1, true) -> (node2, node2 mark)
-                node0.next.compareAndSet(node1, node2, true, node2MarkedHolder[0]);
-                // re-read node 1
-                node1 = node0.next.get(node1MarkedHolder);
-            }
-            return node1;
-        }
-
-        @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("Node{key=");
-            builder.append(key).append('(').append(Integer.toBinaryString(key)).append(')');
-            builder.append(", type=");
-            if ((key & ORDINARY_KEY_MASK) != 0) {
-                builder.append("ORDINARY");
-                builder.append(", value=").append(value);
-            } else {
-                builder.append("SENTINEL");
-                builder.append(", index=").append(reverseBits(key));
-            }
-            if (next != null) {
-                boolean[] markHolder = new boolean[1];
-                Node<T> successor = next.get(markHolder);
-                builder.append(", next={marked=").append(markHolder[0]);
-                builder.append(", \n").append(successor).append("}");
-            }
-            builder.append("}");
-            return builder.toString();
-        }
-    }
-
-    private static final int ORDINARY_KEY_MASK = 1;
-
-    static int ordinaryKey(int hashCode) {
-        return reverseBits(hashCode) | ORDINARY_KEY_MASK;
-    }
-
-    static int sentinelKey(int bucket) {
-        return reverseBits(bucket);
-    }
-
-    static <T> int hashCode(T x) {
-        return x.hashCode() & MASK;
-    }
-
-    private static int reverseBits(int n) {
-        if (n < 0) {
-            throw new IllegalArgumentException("n < 0");
-        }
-        int low = 0x00000001;
-        int high = 0x00800000;
-        int r = 0;
-        for (int i = 0; i < 24; i++) {
-            if ((n & low) != 0) {
-                r |= high;
-            }
-            low <<= 1;
-            high >>>= 1;
-        }
-        return r;
     }
 }
@@ -1,7 +1,5 @@
 package in.xnnyygn.concurrent.hashset;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -13,8 +11,12 @@ public class RWStripedHashSet<T> extends BaseHashSet<T> {
     private volatile Lock[] locks;
 
     public RWStripedHashSet(int capacity) {
-        super(capacity);
-        locks = new ReentrantLock[capacity];
+        this(capacity, BucketStorage.LIST);
+    }
+
+    public RWStripedHashSet(int capacity, BucketStorage bucketStorage) {
+        super(capacity, ResizeMode.STOP_THE_WORLD, bucketStorage);
+        locks = newLocks(capacity);
         ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
         readerLock = lock.readLock();
         writerLock = lock.writeLock();
@@ -22,14 +24,25 @@ public class RWStripedHashSet<T> extends BaseHashSet<T> {
 
     @Override
     protected void acquire(T x) {
+        acquireBucket(hash(x));
+    }
+
+    @Override
+    protected void release(T x) {
+        releaseBucket(hash(x));
+    }
+
+    // table length is always a multiple of lock count
+    @Override
+    protected void acquireBucket(int index) {
         readerLock.lock();
-        locks[x.hashCode() % locks.length].lock();
+        locks[index % locks.length].lock();
         // acquire two locks
     }
 
     @Override
-    protected void release(T x) {
-        locks[x.hashCode() % locks.length].unlock();
+    protected void releaseBucket(int index) {
+        locks[index % locks.length].unlock();
         readerLock.unlock();
     }
 
@@ -39,32 +52,25 @@ public class RWStripedHashSet<T> extends BaseHashSet<T> {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void resize() {
-        int oldCapacity = table.length;
+        int oldCapacity = table.length();
         writerLock.lock();
         try {
-            if (table.length != oldCapacity) {
+            if (table.length() != oldCapacity) {
                 return;
             }
-            List<T>[] oldTable = table;
-            int newCapacity = oldTable.length * 2;
-            table = (List<T>[]) new List[newCapacity];
-            for (int i = 0; i < newCapacity; i++) {
-                table[i] = new ArrayList<>();
-            }
-
-            // transfer elements
-            for (List<T> bucket : oldTable) {
-                for (T x : bucket) {
-                    table[x.hashCode() % table.length].add(x);
-                }
-            }
-
-            Lock[] oldLocks = locks;
-            locks = new ReentrantLock[oldLocks.length * 2];
+            doubleTable();
+            locks = newLocks(locks.length * 2);
         } finally {
             writerLock.unlock();
         }
     }
+
+    private static Lock[] newLocks(int n) {
+        Lock[] locks = new Lock[n];
+        for (int i = 0; i < n; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
 }
@@ -1,7 +1,5 @@
 package in.xnnyygn.concurrent.hashset;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicMarkableReference;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -11,16 +9,22 @@ public class RefinableHashSet<T> extends BaseHashSet<T> {
     private volatile ReentrantLock[] locks;
 
     public RefinableHashSet(int capacity) {
-        super(capacity);
-        locks = new ReentrantLock[capacity];
-        for (int i = 0; i < capacity; i++) {
-            locks[i] = new ReentrantLock();
-        }
+        this(capacity, ResizeMode.STOP_THE_WORLD);
+    }
+
+    public RefinableHashSet(int capacity, ResizeMode resizeMode) {
+        super(capacity, resizeMode);
+        locks = newLocks(capacity);
         atomicOwner = new AtomicMarkableReference<>(null, false);
     }
 
     @Override
     protected void acquire(T x) {
+        acquireBucket(hash(x));
+    }
+
+    @Override
+    protected void acquireBucket(int index) {
         boolean[] markHolder = {true};
         Thread me = Thread.currentThread();
         Thread who;
@@ -35,7 +39,7 @@ public class RefinableHashSet<T> extends BaseHashSet<T> {
 
             // no one is resizing
             oldLocks = locks;
-            oldLock = oldLocks[x.hashCode() % oldLocks.length];
+            oldLock = oldLocks[index % oldLocks.length];
             oldLock.lock();
             who = atomicOwner.get(markHolder);
 
@@ -53,18 +57,25 @@ public class RefinableHashSet<T> extends BaseHashSet<T> {
 
     @Override
     protected void release(T x) {
-        locks[x.hashCode() % locks.length].unlock();
+        releaseBucket(hash(x));
+    }
+
+    @Override
+    protected void releaseBucket(int index) {
+        locks[index % locks.length].unlock();
     }
 
     @Override
     protected boolean policy() {
-        return false;
+        return setSize / table.length() > 4;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void resize() {
-        int oldCapacity = table.length;
+        if (isMigrating()) {
+            return; // previous resize not finished
+        }
+        int oldCapacity = table.length();
         Thread me = Thread.currentThread();
 
         // condition 1
@@ -87,7 +98,8 @@ public class RefinableHashSet<T> extends BaseHashSet<T> {
             // B starts to resize
             // B pass condition 1
             // B will find A has resized
-            if (table.length != oldCapacity) {
+            // another thread may have started migration after the check above
+            if (isMigrating() || table.length() != oldCapacity) {
                 return;
             }
 
@@ -98,30 +110,30 @@ public class RefinableHashSet<T> extends BaseHashSet<T> {
                 }
             }
 
-            List<T>[] oldTable = table;
-            int newCapacity = 2 * oldCapacity;
+            if (resizeMode == ResizeMode.INCREMENTAL) {
+                // lock count must divide both old and new table length while moving,
+                // so locks catch up with the old table here instead of the new one
+                if (locks.length != oldCapacity) {
+                    locks = newLocks(oldCapacity);
+                }
+                startMigration();
+                return;
+            }
 
             // linearization point
-            table = (List<T>[]) new List[newCapacity];
-            for (int i = 0; i < newCapacity; i++) {
-                table[i] = new ArrayList<>();
-            }
-            locks = new ReentrantLock[newCapacity];
-            for (int j = 0; j < locks.length; j++) {
-                locks[j] = new ReentrantLock();
-            }
-            initializeFrom(oldTable);
+            doubleTable();
+            locks = newLocks(table.length());
         } finally {
             // linearization point
             atomicOwner.set(null, false);
         }
     }
 
-    private void initializeFrom(List<T>[] oldTable) {
-        for (List<T> bucket : oldTable) {
-            for (T x : bucket) {
-                table[x.hashCode() % table.length].add(x);
-            }
+    private static ReentrantLock[] newLocks(int n) {
+        ReentrantLock[] locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            locks[i] = new ReentrantLock();
         }
+        return locks;
     }
 }
@@ -1,7 +1,5 @@
 package in.xnnyygn.concurrent.hashset;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -20,6 +18,16 @@ public class RefinableHashSet2<T> extends BaseHashSet<T> {
 
     @Override
     protected void acquire(T x) {
+        acquireBucket(hash(x));
+    }
+
+    @Override
+    protected void release(T x) {
+        releaseBucket(hash(x));
+    }
+
+    @Override
+    protected void acquireBucket(int index) {
         ReentrantLock[] oldLocks;
         ReentrantLock oldLock;
         while (true) {
@@ -28,7 +36,7 @@ public class RefinableHashSet2<T> extends BaseHashSet<T> {
             }
 
             oldLocks = locks;
-            oldLock = oldLocks[x.hashCode() % oldLocks.length];
+            oldLock = oldLocks[index % oldLocks.length];
             oldLock.lock();
 
             // recheck
@@ -41,8 +49,8 @@ public class RefinableHashSet2<T> extends BaseHashSet<T> {
     }
 
     @Override
-    protected void release(T x) {
-        locks[x.hashCode() % locks.length].unlock();
+    protected void releaseBucket(int index) {
+        locks[index % locks.length].unlock();
     }
 
     @Override
@@ -51,9 +59,8 @@ public class RefinableHashSet2<T> extends BaseHashSet<T> {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void resize() {
-        int oldCapacity = table.length;
+        int oldCapacity = table.length();
 
         // someone is resizing
         if (!atomicResizing.compareAndSet(false, true)) {
@@ -61,25 +68,18 @@ public class RefinableHashSet2<T> extends BaseHashSet<T> {
         }
 
         // check if someone resized
-        if (table.length != oldCapacity) {
+        if (table.length() != oldCapacity) {
             atomicResizing.set(false);
             return;
         }
 
         // resizing
-        List<T>[] oldTable = table;
-        int newCapacity = oldCapacity * 2;
-        table = (List<T>[]) new List[newCapacity];
-        locks = new ReentrantLock[newCapacity];
-        for (int i = 0; i < newCapacity; i++) {
-            table[i] = new ArrayList<>();
-            locks[i] = new ReentrantLock();
-        }
-        for (List<T> bucket : oldTable) {
-            for (T x : bucket) {
-                table[x.hashCode() % newCapacity].add(x);
-            }
+        doubleTable();
+        ReentrantLock[] newLocks = new ReentrantLock[table.length()];
+        for (int i = 0; i < newLocks.length; i++) {
+            newLocks[i] = new ReentrantLock();
         }
+        locks = newLocks;
         atomicResizing.set(false);
     }
 }
@@ -0,0 +1,11 @@
+package in.xnnyygn.concurrent.hashset;
+
+public enum ResizeMode {
+
+    // lock all, rehash whole table
+    STOP_THE_WORLD,
+
+    // keep old table, move a few buckets per operation
+    INCREMENTAL
+
+}
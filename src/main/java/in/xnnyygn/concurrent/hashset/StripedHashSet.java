@@ -1,7 +1,5 @@
 package in.xnnyygn.concurrent.hashset;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -10,7 +8,15 @@ public class StripedHashSet<T> extends BaseHashSet<T> {
     private final ReentrantLock[] locks;
 
     public StripedHashSet(int capacity) {
-        super(capacity);
+        this(capacity, ResizeMode.STOP_THE_WORLD);
+    }
+
+    public StripedHashSet(int capacity, ResizeMode resizeMode) {
+        this(capacity, resizeMode, BucketStorage.LIST);
+    }
+
+    public StripedHashSet(int capacity, ResizeMode resizeMode, BucketStorage bucketStorage) {
+        super(capacity, resizeMode, bucketStorage);
         locks = new ReentrantLock[capacity];
         for (int i = 0; i < capacity; i++) {
             locks[i] = new ReentrantLock();
@@ -19,45 +25,48 @@ public class StripedHashSet<T> extends BaseHashSet<T> {
 
     @Override
     protected void acquire(T x) {
-        locks[x.hashCode() % locks.length].lock();
+        acquireBucket(hash(x));
     }
 
     @Override
     protected void release(T x) {
-        locks[x.hashCode() % locks.length].unlock();
+        releaseBucket(hash(x));
+    }
+
+    // table length is always a multiple of lock count
+    @Override
+    protected void acquireBucket(int index) {
+        locks[index % locks.length].lock();
+    }
+
+    @Override
+    protected void releaseBucket(int index) {
+        locks[index % locks.length].unlock();
     }
 
     @Override
     protected boolean policy() {
-        return setSize / table.length > 4;
+        return setSize / table.length() > 4;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void resize() {
-        int oldCapacity = table.length;
+        if (isMigrating()) {
+            return; // previous resize not finished
+        }
+        int oldCapacity = table.length();
         for (Lock lock : locks) {
             lock.lock();
         }
         try {
-            if (oldCapacity != table.length) {
-                return; // someone resized
+            if (isMigrating() || oldCapacity != table.length()) {
+                return; // someone resized, or started migration after the check above
             }
-            int newCapacity = oldCapacity * 2;
-            List<T>[] oldTable = table;
-
-            // initialize new table
-            table = (List<T>[]) new List[newCapacity];
-            for (int i = 0; i < newCapacity; i++) {
-                table[i] = new ArrayList<>();
-            }
-
-            // transfer elements
-            for (List<T> bucket : oldTable) {
-                for (T x : bucket) {
-                    table[x.hashCode() % table.length].add(x);
-                }
+            if (resizeMode == ResizeMode.INCREMENTAL) {
+                startMigration();
+                return;
             }
+            doubleTable();
         } finally {
             for (Lock lock : locks) {
                 lock.unlock();
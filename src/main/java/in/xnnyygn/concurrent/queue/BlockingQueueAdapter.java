@@ -0,0 +1,152 @@
+package in.xnnyygn.concurrent.queue;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking queue over non-blocking queue, waiting by checking in loop with wait strategy.
+ * <p>
+ * Producers and consumers are never signaled, a waiting thread finds the queue changed on next check.
+ * Restriction of underlying queue on producer and consumer threads still applies.
+ * Iterator is the weakly consistent one of underlying queue, items are removed by polling only,
+ * so {@link #remove(Object)} and {@link Iterator#remove()} throw {@link UnsupportedOperationException}.
+ */
+public class BlockingQueueAdapter<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final NonBlockingQueue<E> queue;
+    private final WaitStrategy waitStrategy;
+
+    public BlockingQueueAdapter(NonBlockingQueue<E> queue, WaitStrategy waitStrategy) {
+        if (queue == null || waitStrategy == null) {
+            throw new NullPointerException();
+        }
+        this.queue = queue;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(@Nonnull E e) {
+        return queue.offer(e);
+    }
+
+    @Override
+    public void put(@Nonnull E e) throws InterruptedException {
+        int round = 0;
+        while (!queue.offer(e)) {
+            idle(round++);
+        }
+        waitStrategy.done(round);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int round = 0;
+        long remainingNanos;
+        while (!queue.offer(e)) {
+            remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            idle(round++, remainingNanos);
+        }
+        waitStrategy.done(round);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        return queue.poll();
+    }
+
+    @Override
+    @Nonnull
+    public E take() throws InterruptedException {
+        int round = 0;
+        E e;
+        while ((e = queue.poll()) == null) {
+            idle(round++);
+        }
+        waitStrategy.done(round);
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int round = 0;
+        long remainingNanos;
+        E e;
+        while ((e = queue.poll()) == null) {
+            remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return null;
+            }
+            idle(round++, remainingNanos);
+        }
+        waitStrategy.done(round);
+        return e;
+    }
+
+    private void idle(int round) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        waitStrategy.idle(round);
+    }
+
+    private void idle(int round, long remainingNanos) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        waitStrategy.idle(round, remainingNanos);
+    }
+
+    @Override
+    public E peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return queue.capacity() - queue.size();
+    }
+
+    @Override
+    public int drainTo(@Nonnull Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@Nonnull Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException("drain to self");
+        }
+        return queue.drain(c::add, Math.max(0, maxElements));
+    }
+
+    @Override
+    @Nonnull
+    public Iterator<E> iterator() {
+        return queue.iterator();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,12 @@
+package in.xnnyygn.concurrent.queue;
+
+/**
+ * Check again immediately, lowest latency and a core burnt by each waiting thread.
+ * For threads pinned to dedicated cores only.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void idle(int round) {
+    }
+}
@@ -1,29 +1,298 @@
 package in.xnnyygn.concurrent.queue;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-public class LockFreeArrayBoundedQueue<T> {
+/**
+ * Bounded multi-producer multi-consumer queue on ring buffer, by Dmitry Vyukov.
+ * <p>
+ * Each slot has a sequence. Slot at position {@code pos} is free for the producer of {@code pos} when its sequence
+ * is {@code pos}, and is full for the consumer of {@code pos} when its sequence is {@code pos + 1}. Producers and
+ * consumers claim positions by CAS on tail and head, then publish the slot by writing its sequence,
+ * so an item is never visible before it is written.
+ * <p>
+ * A producer unable to write a claimed slot releases it as if consumed, consumers finding such a slot
+ * at head move head past it.
+ */
+public class LockFreeArrayBoundedQueue<T> implements NonBlockingQueue<T> {
 
+    private final int mask;
     private final T[] buffer;
-    private final AtomicInteger atomicHead = new AtomicInteger(0);
-    private final AtomicInteger atomicTail = new AtomicInteger(0);
+    private final AtomicLongArray sequences;
+    // next position to offer
+    private final PaddedCounter tail = new PaddedCounter();
+    // next position to poll
+    private final PaddedCounter head = new PaddedCounter();
 
+    /**
+     * @param capacity capacity, rounded up to power of two, at least 2
+     */
     @SuppressWarnings("unchecked")
     public LockFreeArrayBoundedQueue(int capacity) {
         if (capacity <= 0) {
             throw new IllegalArgumentException("capacity <= 0");
         }
-        buffer = (T[]) new Object[capacity];
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity > 2^30");
+        }
+        // slot of position pos + 1 must not be the slot of pos
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        buffer = (T[]) new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return false if queue is full
+     */
+    @Override
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        long pos = claim();
+        if (pos < 0) {
+            return false;
+        }
+        int index = (int) pos & mask;
+        buffer[index] = item;
+        // ordered write, item is written before slot is published
+        sequences.lazySet(index, pos + 1);
+        return true;
+    }
+
+    /**
+     * Claim next free slot for producer.
+     *
+     * @return position claimed, or -1 if queue is full
+     */
+    private long claim() {
+        long pos = tail.get();
+        long diff;
+        while (true) {
+            diff = sequences.get((int) pos & mask) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+            } else if (diff < 0) {
+                // slot is not consumed since last round
+                return -1;
+            }
+            // claimed by another producer
+            pos = tail.get();
+        }
+    }
+
+    /**
+     * @return item, or {@code null} if queue is empty
+     */
+    @Override
+    public T poll() {
+        long pos = head.get();
+        int index;
+        long sequence;
+        long diff;
+        while (true) {
+            index = (int) pos & mask;
+            sequence = sequences.get(index);
+            diff = sequence - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                // slot is not published
+                return null;
+            } else {
+                skipReleased(pos);
+            }
+            // claimed by another consumer
+            pos = head.get();
+        }
+        T item = buffer[index];
+        buffer[index] = null;
+        // free slot for the producer of next round
+        sequences.lazySet(index, pos + mask + 1);
+        return item;
+    }
+
+    @Override
+    public T peek() {
+        long pos;
+        int index;
+        long sequence;
+        T item;
+        while (true) {
+            pos = head.get();
+            index = (int) pos & mask;
+            sequence = sequences.get(index);
+            if (sequence == pos + 1) {
+                item = buffer[index];
+                // item is valid if no consumer claimed it before the read
+                if (head.get() == pos) {
+                    return item;
+                }
+            } else if (sequence < pos + 1) {
+                if (head.get() == pos) {
+                    return null;
+                }
+            } else {
+                skipReleased(pos);
+            }
+        }
+    }
+
+    /**
+     * Called when sequence of slot of pos is beyond {@code pos + 1}. If head is still pos, the slot was released
+     * by a producer without item, and may even be reused in next round, since a consumer moves head before
+     * releasing. Move head past it.
+     */
+    private void skipReleased(long pos) {
+        if (head.get() == pos) {
+            head.compareAndSet(pos, pos + 1);
+        }
+    }
+
+    /**
+     * Poll items one by one. Each item is claimed by its own CAS, so items not passed to consumer stay in queue
+     * if consumer throws, while the item passed is removed.
+     *
+     * @param consumer consumer of items
+     * @param limit    max count of items
+     * @return count of items polled
+     */
+    @Override
+    public int drain(Consumer<? super T> consumer, int limit) {
+        if (consumer == null) {
+            throw new NullPointerException();
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit < 0");
+        }
+        int n = 0;
+        T item;
+        while (n < limit && (item = poll()) != null) {
+            n++;
+            consumer.accept(item);
+        }
+        return n;
+    }
+
+    /**
+     * Offer items until limit is reached, queue is full or supplier returns {@code null}.
+     * Slot is claimed before item is supplied, so a supplied item is never rejected. If supplier returns
+     * {@code null} or throws, the claimed slot is released without item, and skipped by consumers.
+     *
+     * @param supplier supplier of items
+     * @param limit    max count of items
+     * @return count of items offered
+     */
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        if (supplier == null) {
+            throw new NullPointerException();
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit < 0");
+        }
+        int offered = 0;
+        long pos;
+        int index;
+        T item;
+        while (offered < limit && (pos = claim()) >= 0) {
+            index = (int) pos & mask;
+            item = null;
+            try {
+                item = supplier.get();
+            } finally {
+                if (item == null) {
+                    // release as consumed
+                    sequences.lazySet(index, pos + mask + 1);
+                }
+            }
+            if (item == null) {
+                break;
+            }
+            buffer[index] = item;
+            sequences.lazySet(index, pos + 1);
+            offered++;
+        }
+        return offered;
+    }
+
+    /**
+     * Count of items, not accurate under concurrent updates.
+     */
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return size < 0 ? 0 : (int) Math.min(size, buffer.length);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Items between head and tail when created, released slots are skipped, and items polled after creation
+     * may still be returned.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
     }
 
-    public void enqueue(T item) {
-        int tail = atomicTail.get();
-        // cannot wait
-        if (tail - atomicHead.get() == buffer.length) {
-            throw new IllegalStateException("queue is full");
+    private final class Itr implements Iterator<T> {
+
+        private long pos = head.get();
+        private final long end = tail.get();
+        private T next;
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            int index;
+            while (next == null && pos < end) {
+                index = (int) pos & mask;
+                if (sequences.get(index) == pos + 1) {
+                    next = buffer[index];
+                    // item is valid if slot is still published for pos after the read
+                    if (sequences.get(index) != pos + 1) {
+                        next = null;
+                    }
+                }
+                pos++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            T item = next;
+            if (item == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return item;
         }
-        // tail maybe change between setting and increment
-        buffer[tail % buffer.length] = item;
-        atomicTail.getAndIncrement();
     }
 }
@@ -0,0 +1,346 @@
+package in.xnnyygn.concurrent.queue;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Unbounded queue for multiple producers and single consumer, on linked array chunks.
+ * <p>
+ * A producer claims a position by one {@code getAndIncrement} on producer index, finds the chunk of the position,
+ * appending chunks if needed, and writes item to the slot. The consumer reads slots in position order, and
+ * a claimed slot not written yet is seen as empty by {@link #relaxedPoll()}. Only chunks are allocated.
+ * <p>
+ * Producer chunk only moves to the chunk of a position claimed, so a producer reading it before claiming
+ * always finds its chunk by walking forward.
+ * <p>
+ * Iterator is weakly consistent and read only, items are removed by the consumer in order only.
+ */
+@SuppressWarnings("Duplicates")
+public class MpscChunkedQueue<T> extends AbstractQueue<T> implements NonBlockingQueue<T> {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscChunkedQueue, Chunk> PRODUCER_CHUNK =
+            AtomicReferenceFieldUpdater.newUpdater(MpscChunkedQueue.class, Chunk.class, "producerChunk");
+
+    private final int shift;
+    private final int mask;
+    private final PaddedCounter producerIndex = new PaddedCounter();
+    // chunk of some claimed position, never moves backward
+    private volatile Chunk<T> producerChunk;
+    // written by consumer only
+    private final PaddedCounter consumerIndex = new PaddedCounter();
+    // accessed by consumer only
+    private Chunk<T> consumerChunk;
+
+    public MpscChunkedQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize slots of each chunk, rounded up to power of two
+     */
+    public MpscChunkedQueue(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size <= 0");
+        }
+        if (chunkSize > (1 << 30)) {
+            throw new IllegalArgumentException("chunk size > 2^30");
+        }
+        int size = chunkSize == 1 ? 1 : Integer.highestOneBit(chunkSize - 1) << 1;
+        shift = Integer.numberOfTrailingZeros(size);
+        mask = size - 1;
+        Chunk<T> chunk = new Chunk<>(0, size);
+        producerChunk = chunk;
+        consumerChunk = chunk;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        // read before claiming
+        Chunk<T> chunk = producerChunk;
+        long index = producerIndex.getAndIncrement();
+        long chunkIndex = index >>> shift;
+        if (chunk.index != chunkIndex) {
+            chunk = producerChunk(chunk, chunkIndex);
+        }
+        chunk.slots.lazySet((int) index & mask, item);
+        return true;
+    }
+
+    /**
+     * Walk to chunk of claimed position and move producer chunk to it.
+     */
+    private Chunk<T> producerChunk(Chunk<T> chunk, long chunkIndex) {
+        Chunk<T> next;
+        while (chunk.index < chunkIndex) {
+            next = chunk.next;
+            if (next == null) {
+                next = new Chunk<>(chunk.index + 1, mask + 1);
+                if (!chunk.casNext(null, next)) {
+                    next = chunk.next;
+                }
+            }
+            chunk = next;
+        }
+        Chunk<T> current;
+        while ((current = producerChunk).index < chunkIndex && !PRODUCER_CHUNK.compareAndSet(this, current, chunk)) {
+            // retry
+        }
+        return chunk;
+    }
+
+    /**
+     * Consumer only. A claimed slot not written yet is waited for.
+     */
+    @Override
+    public T poll() {
+        long index = consumerIndex.get();
+        Chunk<T> chunk = consumerChunk(index, true);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = (int) index & mask;
+        T item = chunk.slots.get(offset);
+        if (item == null) {
+            if (index == producerIndex.get()) {
+                return null;
+            }
+            // claimed, producer is writing
+            while ((item = chunk.slots.get(offset)) == null) {
+                // spin
+            }
+        }
+        chunk.slots.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return item;
+    }
+
+    /**
+     * Consumer only. A claimed slot not written yet is seen as empty.
+     *
+     * @return item, or {@code null} if next slot is empty
+     */
+    public T relaxedPoll() {
+        long index = consumerIndex.get();
+        Chunk<T> chunk = consumerChunk(index, false);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = (int) index & mask;
+        T item = chunk.slots.get(offset);
+        if (item == null) {
+            return null;
+        }
+        chunk.slots.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return item;
+    }
+
+    /**
+     * Consumer only.
+     */
+    @Override
+    public T peek() {
+        long index = consumerIndex.get();
+        Chunk<T> chunk = consumerChunk(index, true);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = (int) index & mask;
+        T item = chunk.slots.get(offset);
+        if (item == null && index != producerIndex.get()) {
+            while ((item = chunk.slots.get(offset)) == null) {
+                // spin
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Poll items in batch without CAS, consumer only. Stops at a claimed slot not written yet.
+     *
+     * @param consumer consumer of items
+     * @param limit    max count of items
+     * @return count of items polled
+     */
+    @Override
+    public int drain(Consumer<? super T> consumer, int limit) {
+        if (consumer == null) {
+            throw new NullPointerException();
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit < 0");
+        }
+        long start = consumerIndex.get();
+        long index = start;
+        try {
+            Chunk<T> chunk;
+            int offset;
+            T item;
+            while (index - start < limit && (chunk = consumerChunk(index, false)) != null) {
+                offset = (int) index & mask;
+                if ((item = chunk.slots.get(offset)) == null) {
+                    break;
+                }
+                chunk.slots.lazySet(offset, null);
+                // item passed to consumer is removed even if consumer throws
+                index++;
+                consumer.accept(item);
+            }
+        } finally {
+            if (index != start) {
+                consumerIndex.lazySet(index);
+            }
+        }
+        return (int) (index - start);
+    }
+
+    /**
+     * Chunk of position, moving consumer chunk forward if position is the first of next chunk.
+     *
+     * @param wait wait for next chunk to be linked if position is claimed
+     * @return chunk, or {@code null} if next chunk is not linked
+     */
+    private Chunk<T> consumerChunk(long index, boolean wait) {
+        Chunk<T> chunk = consumerChunk;
+        if (chunk.index == index >>> shift) {
+            return chunk;
+        }
+        // previous chunk is never visited again, but producers may still walk through it
+        Chunk<T> next = chunk.next;
+        if (next == null) {
+            if (!wait || index == producerIndex.get()) {
+                return null;
+            }
+            while ((next = chunk.next) == null) {
+                // spin, producer is linking
+            }
+        }
+        consumerChunk = next;
+        return next;
+    }
+
+    /**
+     * Count of items including claimed slots not written yet, not accurate under concurrent updates.
+     */
+    @Override
+    public int size() {
+        // consumer index is never greater than producer index read later
+        long consumer = consumerIndex.get();
+        long size = producerIndex.get() - consumer;
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    @Override
+    public int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Weakly consistent iterator over items between consumer index and producer index when created.
+     * Claimed slots not written yet are skipped, and items polled after creation may still be returned.
+     * {@link Iterator#remove()} is not supported.
+     */
+    @Override
+    @Nonnull
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Items are removed by the consumer in order only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    private final class Itr implements Iterator<T> {
+
+        // chunks before consumer chunk are still linked, a stale one only makes the walk longer
+        private Chunk<T> chunk = consumerChunk;
+        private long index = consumerIndex.get();
+        private final long end = producerIndex.get();
+        private T next;
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            long chunkIndex;
+            Chunk<T> nextChunk;
+            while (index < end) {
+                chunkIndex = index >>> shift;
+                if (chunk.index > chunkIndex) {
+                    // consumer moved to later chunk after index was read
+                    index = chunk.index << shift;
+                    continue;
+                }
+                if (chunk.index < chunkIndex) {
+                    if ((nextChunk = chunk.next) == null) {
+                        // producer is linking
+                        return;
+                    }
+                    chunk = nextChunk;
+                    continue;
+                }
+                next = chunk.slots.get((int) index++ & mask);
+                if (next != null) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            T item = next;
+            if (item == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return item;
+        }
+    }
+
+    private static final class Chunk<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+        final long index;
+        final AtomicReferenceArray<T> slots;
+        volatile Chunk<T> next;
+
+        Chunk(long index, int size) {
+            this.index = index;
+            slots = new AtomicReferenceArray<>(size);
+        }
+
+        boolean casNext(Chunk<T> expect, Chunk<T> update) {
+            return NEXT.compareAndSet(this, expect, update);
+        }
+    }
+}
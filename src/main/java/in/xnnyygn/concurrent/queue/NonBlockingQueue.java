@@ -0,0 +1,48 @@
+package in.xnnyygn.concurrent.queue;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Queue never blocking the caller, full and empty are reported by return values.
+ */
+public interface NonBlockingQueue<T> {
+
+    /**
+     * @return false if queue is full
+     */
+    boolean offer(T item);
+
+    /**
+     * @return item, or {@code null} if queue is empty
+     */
+    T poll();
+
+    /**
+     * @return first item, or {@code null} if queue is empty
+     */
+    T peek();
+
+    /**
+     * @return count of items polled
+     */
+    int drain(Consumer<? super T> consumer, int limit);
+
+    /**
+     * Count of items, not accurate under concurrent updates.
+     */
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * @return capacity, or {@link Integer#MAX_VALUE} if unbounded
+     */
+    int capacity();
+
+    /**
+     * Weakly consistent iterator over items in queue when created, items may be polled or offered meanwhile.
+     * {@link Iterator#remove()} is not supported.
+     */
+    Iterator<T> iterator();
+}
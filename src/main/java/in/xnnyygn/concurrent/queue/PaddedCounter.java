@@ -0,0 +1,42 @@
+package in.xnnyygn.concurrent.queue;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Counter on its own cache line, fields of superclass are laid out first.
+ */
+@SuppressWarnings("unused")
+final class PaddedCounter extends PaddedCounterValue {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+class PaddedCounterValue extends PaddedCounterLeftPadding {
+    private static final AtomicLongFieldUpdater<PaddedCounterValue> VALUE =
+            AtomicLongFieldUpdater.newUpdater(PaddedCounterValue.class, "value");
+
+    protected volatile long value = 0;
+
+    final long get() {
+        return value;
+    }
+
+    /**
+     * Ordered write.
+     */
+    final void lazySet(long value) {
+        VALUE.lazySet(this, value);
+    }
+
+    final boolean compareAndSet(long expect, long update) {
+        return VALUE.compareAndSet(this, expect, update);
+    }
+
+    final long getAndIncrement() {
+        return VALUE.getAndIncrement(this);
+    }
+}
+
+@SuppressWarnings("unused")
+class PaddedCounterLeftPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
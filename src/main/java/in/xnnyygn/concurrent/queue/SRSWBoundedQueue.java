@@ -1,38 +1,260 @@
 package in.xnnyygn.concurrent.queue;
 
-public class SRSWBoundedQueue<T> {
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
 
+/**
+ * Wait-free bounded queue for single producer and single consumer.
+ * <p>
+ * Each side keeps a cached copy of the index of the other side and reads the real one only when
+ * the cache says the queue is full or empty. Indices are published by ordered writes, and a batch
+ * publishes its index once, so a burst of items moves the index cache line between cores once.
+ */
+public class SRSWBoundedQueue<T> implements NonBlockingQueue<T> {
+
+    private final int mask;
     private final T[] buffer;
-    private volatile int cursor;
-    private volatile int max;
+    // index: next position to offer, cache: head seen by producer
+    private final Cursor producer = new Cursor();
+    // index: next position to poll, cache: tail seen by consumer
+    private final Cursor consumer = new Cursor();
 
+    /**
+     * @param capacity capacity, rounded up to power of two
+     */
+    @SuppressWarnings("unchecked")
     public SRSWBoundedQueue(int capacity) {
         if (capacity <= 0) {
             throw new IllegalArgumentException("capacity <= 0");
         }
-        buffer = (T[]) new Object[capacity];
-        cursor = 0;
-        max = 0;
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity > 2^30");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        buffer = (T[]) new Object[size];
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.length;
     }
 
-    public void enqueue(T item) {
+    /**
+     * Producer only.
+     *
+     * @return false if queue is full
+     */
+    @Override
+    public boolean offer(T item) {
         if (item == null) {
             throw new NullPointerException();
         }
-        if (max - cursor == buffer.length) {
-            throw new IllegalStateException("queue is full");
+        long tail = producer.index;
+        if (available(tail, 1) == 0) {
+            return false;
+        }
+        buffer[(int) tail & mask] = item;
+        producer.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Offer items from the start of batch as many as queue can hold, producer only.
+     *
+     * @return count of items offered
+     */
+    public int offer(T[] batch) {
+        for (T item : batch) {
+            if (item == null) {
+                throw new NullPointerException();
+            }
+        }
+        long tail = producer.index;
+        int n = Math.min(batch.length, available(tail, batch.length));
+        for (int i = 0; i < n; i++) {
+            buffer[(int) (tail + i) & mask] = batch[i];
+        }
+        if (n > 0) {
+            producer.lazySet(tail + n);
+        }
+        return n;
+    }
+
+    /**
+     * Free slots seen by producer, head is read only when cached one is not enough.
+     */
+    private int available(long tail, int wanted) {
+        int free = buffer.length - (int) (tail - producer.cache);
+        if (free < wanted) {
+            producer.cache = consumer.index;
+            free = buffer.length - (int) (tail - producer.cache);
+        }
+        return free;
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return item, or {@code null} if queue is empty
+     */
+    @Override
+    public T poll() {
+        long head = consumer.index;
+        if (ready(head, 1) == 0) {
+            return null;
+        }
+        int index = (int) head & mask;
+        T item = buffer[index];
+        buffer[index] = null;
+        consumer.lazySet(head + 1);
+        return item;
+    }
+
+    /**
+     * Consumer only.
+     */
+    @Override
+    public T peek() {
+        long head = consumer.index;
+        return ready(head, 1) == 0 ? null : buffer[(int) head & mask];
+    }
+
+    /**
+     * Poll items in batch, consumer only.
+     *
+     * @param consumer consumer of items
+     * @param limit    max count of items
+     * @return count of items polled
+     */
+    @Override
+    public int drain(Consumer<? super T> consumer, int limit) {
+        if (consumer == null) {
+            throw new NullPointerException();
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit < 0");
+        }
+        long head = this.consumer.index;
+        int n = Math.min(limit, ready(head, limit));
+        int polled = 0;
+        try {
+            int index;
+            T item;
+            while (polled < n) {
+                index = (int) (head + polled) & mask;
+                item = buffer[index];
+                buffer[index] = null;
+                // item passed to consumer is removed even if consumer throws
+                polled++;
+                consumer.accept(item);
+            }
+        } finally {
+            if (polled > 0) {
+                this.consumer.lazySet(head + polled);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Published items seen by consumer, tail is read only when cached ones are not enough.
+     */
+    private int ready(long head, int wanted) {
+        int n = (int) (consumer.cache - head);
+        if (n < wanted) {
+            consumer.cache = producer.index;
+            n = (int) (consumer.cache - head);
+        }
+        return n;
+    }
+
+    /**
+     * Count of items, not accurate under concurrent updates.
+     */
+    @Override
+    public int size() {
+        long size = producer.index - consumer.index;
+        return size < 0 ? 0 : (int) Math.min(size, buffer.length);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producer.index == consumer.index;
+    }
+
+    /**
+     * Items between consumer index and producer index when created, for any thread.
+     * Items polled after creation may still be returned.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    private final class Itr implements Iterator<T> {
+
+        private long index = consumer.index;
+        private final long end = producer.index;
+        private T next;
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && index < end) {
+                next = buffer[(int) index & mask];
+                // slot is reused by producer only after consumer moves past it
+                if (consumer.index > index) {
+                    next = null;
+                }
+                index++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            T item = next;
+            if (item == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return item;
         }
-        buffer[max % buffer.length] = item;
-        max++;
     }
 
-    public T dequeue() {
-        if (max == cursor) {
-            throw new IllegalStateException("queue is empty");
+    @SuppressWarnings("unused")
+    private static class LeftPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class Fields extends LeftPadding {
+        private static final AtomicLongFieldUpdater<Fields> INDEX = AtomicLongFieldUpdater.newUpdater(Fields.class, "index");
+
+        // written by owner only
+        protected volatile long index = 0;
+        // accessed by owner only
+        protected long cache = 0;
+
+        final void lazySet(long index) {
+            INDEX.lazySet(this, index);
         }
-        T result = buffer[cursor % buffer.length];
-        cursor++;
-        return result;
     }
 
+    /**
+     * Index and cache of one side on their own cache line, fields of superclass are laid out first.
+     */
+    @SuppressWarnings("unused")
+    private static final class Cursor extends Fields {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+    }
 }
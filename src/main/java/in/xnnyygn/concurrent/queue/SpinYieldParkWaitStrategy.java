@@ -0,0 +1,97 @@
+package in.xnnyygn.concurrent.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spin, then yield, then park with growing period.
+ * <p>
+ * Spin budget adapts to recent waits. A wait ended while yielding means spinning a little longer would
+ * have caught it, so the budget is doubled. A wait ended after parking means spinning was wasted,
+ * so the budget is halved. Budget is shared by waiting threads and updated without synchronization,
+ * a lost update only delays adaptation.
+ */
+public class SpinYieldParkWaitStrategy implements WaitStrategy {
+
+    private static final int DEFAULT_MIN_SPINS = 16;
+    private static final int DEFAULT_MAX_SPINS = 8192;
+    private static final int DEFAULT_YIELDS = 16;
+    private static final long MIN_PARK_NANOS = 1000;
+
+    private final int minSpins;
+    private final int maxSpins;
+    private final int yields;
+    private final long maxParkNanos;
+    private volatile int spins;
+
+    public SpinYieldParkWaitStrategy() {
+        this(DEFAULT_MIN_SPINS, DEFAULT_MAX_SPINS, DEFAULT_YIELDS, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param minSpins min spin budget
+     * @param maxSpins max spin budget
+     * @param yields   rounds of yield after spinning
+     * @param maxPark  max park period
+     * @param unit     unit of max park period
+     */
+    public SpinYieldParkWaitStrategy(int minSpins, int maxSpins, int yields, long maxPark, TimeUnit unit) {
+        if (minSpins < 0 || maxSpins < minSpins) {
+            throw new IllegalArgumentException("illegal spin budget [" + minSpins + ", " + maxSpins + "]");
+        }
+        if (yields < 0) {
+            throw new IllegalArgumentException("yields < 0");
+        }
+        if (unit.toNanos(maxPark) < MIN_PARK_NANOS) {
+            throw new IllegalArgumentException("max park < " + MIN_PARK_NANOS + "ns");
+        }
+        this.minSpins = minSpins;
+        this.maxSpins = maxSpins;
+        this.yields = yields;
+        maxParkNanos = unit.toNanos(maxPark);
+        spins = minSpins + (maxSpins - minSpins) / 8;
+    }
+
+    @Override
+    public void idle(int round) {
+        idle(round, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void idle(int round, long remainingNanos) {
+        int budget = spins;
+        if (round < budget) {
+            return;
+        }
+        if (round < budget + yields) {
+            Thread.yield();
+            return;
+        }
+        // double period on each park
+        int parks = round - budget - yields;
+        long periodNanos = parks >= 30 ? maxParkNanos : Math.min(maxParkNanos, MIN_PARK_NANOS << parks);
+        LockSupport.parkNanos(Math.min(periodNanos, remainingNanos));
+    }
+
+    @Override
+    public void done(int rounds) {
+        int budget = spins;
+        if (rounds <= budget) {
+            return;
+        }
+        if (rounds <= budget + yields) {
+            if (budget < maxSpins) {
+                spins = (int) Math.min(maxSpins, Math.max(1L, budget * 2L));
+            }
+        } else if (budget > minSpins) {
+            spins = Math.max(minSpins, budget / 2);
+        }
+    }
+
+    /**
+     * Current spin budget.
+     */
+    int spins() {
+        return spins;
+    }
+}
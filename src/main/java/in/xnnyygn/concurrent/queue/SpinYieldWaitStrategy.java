@@ -0,0 +1,29 @@
+package in.xnnyygn.concurrent.queue;
+
+/**
+ * Spin for some rounds, then yield core to other threads on each round.
+ */
+public class SpinYieldWaitStrategy implements WaitStrategy {
+
+    private static final int DEFAULT_SPINS = 100;
+
+    private final int spins;
+
+    public SpinYieldWaitStrategy() {
+        this(DEFAULT_SPINS);
+    }
+
+    public SpinYieldWaitStrategy(int spins) {
+        if (spins < 0) {
+            throw new IllegalArgumentException("spins < 0");
+        }
+        this.spins = spins;
+    }
+
+    @Override
+    public void idle(int round) {
+        if (round >= spins) {
+            Thread.yield();
+        }
+    }
+}
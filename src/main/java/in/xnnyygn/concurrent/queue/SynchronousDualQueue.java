@@ -1,241 +1,639 @@
 package in.xnnyygn.concurrent.queue;
 
 import javax.annotation.Nonnull;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
-public class SynchronousDualQueue<T> {
+/**
+ * Synchronous queue on dual data structure, by Scherer, Lea and Scott.
+ * <p>
+ * A producer or consumer finding no complementary node appends a node and waits on it, spinning for a while
+ * if it is next to be matched, then parking. A complementary thread fulfills the first waiting node
+ * and both leave. Fair mode uses a dual queue and matches in FIFO order, unfair mode uses a dual stack
+ * and matches in LIFO order, which keeps recently active threads hot.
+ * <p>
+ * Waiting nodes are cancelled by timeout or interrupt and unlinked by the canceller.
+ * Queue holds no item, size is always 0.
+ */
+public class SynchronousDualQueue<T> extends AbstractQueue<T> implements BlockingQueue<T> {
 
-    private final AtomicReference<Node<T>> atomicHead;
-    private final AtomicReference<Node<T>> atomicTail;
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+    // spinning is useless on single core
+    private static final int MAX_TIMED_SPINS = NCPU < 2 ? 0 : 32;
+    // no deadline to check on each spin
+    private static final int MAX_UNTIMED_SPINS = MAX_TIMED_SPINS * 16;
+    // park is less precise than spinning for shorter time
+    private static final long SPIN_FOR_TIMEOUT_THRESHOLD = 1000L;
 
+    private final Transferer<T> transferer;
+
+    /**
+     * Create fair queue.
+     */
     public SynchronousDualQueue() {
-        Node<T> sentinel = new Node<>(null);
-        atomicHead = new AtomicReference<>(sentinel);
-        atomicTail = new AtomicReference<>(sentinel);
-    }
-
-//    public void enqueue(T item) {
-//        if (item == null) {
-//            throw new IllegalArgumentException("item required");
-//        }
-//        Node<T> head = atomicHead.get();
-//        Node<T> current = head;
-//        Node<T> itemNode = new Node<>(item);
-//        while (true) {
-//            // sentinel: type == item && item == null && next == null
-//            if (current.type == NodeType.ITEM) {
-//                if (current.item() == null) {
-//                    if (current.next() == null) {
-//                        // sentinel, append node
-//                        if (current.casNext(itemNode)) {
-//                            itemNode.waitUntilItemBecomeNull();
-//                            atomicHead.compareAndSet(head, itemNode);
-//                            return;
-//                        }
-//                        // if failed, next has been set, move forward
-//                    } else {
-//                        // next != null
-//                        // not sentinel, but used, set head
-//                        if (atomicHead.compareAndSet(head, current)) {
-//                            head = current;
-//                        }
-//                    }
-//                } else {
-//                    // item != null
-//                    // another enqueue thread
-//                    // try to append node
-//                    if (current.next() == null && current.casNext(itemNode)) {
-//                        itemNode.waitUntilItemBecomeNull();
-//                        atomicHead.compareAndSet(head, itemNode);
-//                        return;
-//                    }
-//                    // current.next != null or failed to cas next, move forward
-//                }
-//            } else {
-//                // reservation
-//                if (current.item() == null) {
-//                    if (current.casItem(null, item)) {
-//                        current.waitUntilItemBecomeNull();
-//                        return;
-//                    }
-//                    // failed to CAS item, set by another enqueue thread
-//                    // try to append node
-//                    if (current.next() == null && current.casNext(itemNode)) {
-//                        itemNode.waitUntilItemBecomeNull();
-//                        atomicHead.compareAndSet(head, itemNode);
-//                        return;
-//                    }
-//                }
-//            }
-//            current = current.next();
-//        }
-//    }
-
-    public void enqueue(T item) {
-        // if head == tail, then current node is sentinel
-        Node<T> head;
-        Node<T> tail;
-        Node<T> next;
-        Node<T> node = new Node<>(item);
-        while (true) {
-            head = atomicHead.get();
-            tail = atomicTail.get();
-            if (head == tail || tail.type == NodeType.ITEM) {
-                // sentinel, no other enqueue thread, or enqueue threads exist
-                next = tail.next();
-                if (next != null) {
-                    atomicTail.compareAndSet(tail, next);
-                } else {
-                    if (tail.casNext(node)) {
-                        atomicTail.compareAndSet(tail, node);
-                        node.waitUntilItemBecomeNull();
-
-                        // move forward
-                        head = atomicHead.get();
-                        if (head.next() == node) {
-                            atomicHead.compareAndSet(head, node);
+        this(true);
+    }
+
+    /**
+     * @param fair FIFO if true, LIFO otherwise
+     */
+    public SynchronousDualQueue(boolean fair) {
+        transferer = fair ? new DualQueue<>() : new DualStack<>();
+    }
+
+    /**
+     * Wait for a consumer to take the item.
+     */
+    @Override
+    public void put(@Nonnull T item) throws InterruptedException {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        if (transferer.transfer(item, false, 0) == null) {
+            Thread.interrupted();
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * @return true if item is taken by a consumer in time
+     */
+    @Override
+    public boolean offer(T item, long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        if (transferer.transfer(item, true, unit.toNanos(timeout)) != null) {
+            return true;
+        }
+        if (!Thread.interrupted()) {
+            return false;
+        }
+        throw new InterruptedException();
+    }
+
+    /**
+     * @return true if a consumer is waiting and takes the item
+     */
+    @Override
+    public boolean offer(@Nonnull T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        return transferer.transfer(item, true, 0) != null;
+    }
+
+    @Override
+    @Nonnull
+    public T take() throws InterruptedException {
+        T item = transferer.transfer(null, false, 0);
+        if (item != null) {
+            return item;
+        }
+        Thread.interrupted();
+        throw new InterruptedException();
+    }
+
+    /**
+     * @return item, or {@code null} if no producer offers in time
+     */
+    @Override
+    public T poll(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        T item = transferer.transfer(null, true, unit.toNanos(timeout));
+        if (item != null || !Thread.interrupted()) {
+            return item;
+        }
+        throw new InterruptedException();
+    }
+
+    /**
+     * @return item if a producer is waiting, otherwise {@code null}
+     */
+    @Override
+    public T poll() {
+        return transferer.transfer(null, true, 0);
+    }
+
+    @Override
+    public T peek() {
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return true;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return 0;
+    }
+
+    @Override
+    public int drainTo(@Nonnull Collection<? super T> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@Nonnull Collection<? super T> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException("drain to self");
+        }
+        int n = 0;
+        T item;
+        while (n < maxElements && (item = poll()) != null) {
+            c.add(item);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    @Nonnull
+    public Iterator<T> iterator() {
+        return Collections.emptyIterator();
+    }
+
+    private interface Transferer<T> {
+
+        /**
+         * Put item, or take item if item is {@code null}.
+         *
+         * @param item  item, {@code null} for consumer
+         * @param timed wait for nanos or not
+         * @param nanos max time to wait
+         * @return item given or taken, or {@code null} if timed out or interrupted
+         */
+        T transfer(T item, boolean timed, long nanos);
+    }
+
+    /**
+     * Dual queue. Waiting nodes are all data or all requests, a complementary thread fulfills the node after head
+     * and moves head to it, so the fulfilled node becomes the new sentinel.
+     */
+    @SuppressWarnings("Duplicates")
+    private static final class DualQueue<T> implements Transferer<T> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<DualQueue, Node> HEAD =
+                AtomicReferenceFieldUpdater.newUpdater(DualQueue.class, Node.class, "head");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<DualQueue, Node> TAIL =
+                AtomicReferenceFieldUpdater.newUpdater(DualQueue.class, Node.class, "tail");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<DualQueue, Node> CLEAN_ME =
+                AtomicReferenceFieldUpdater.newUpdater(DualQueue.class, Node.class, "cleanMe");
+
+        private volatile Node head;
+        private volatile Node tail;
+        // predecessor of a cancelled tail node, which cannot be unlinked until it is not tail
+        private volatile Node cleanMe;
+
+        DualQueue() {
+            Node sentinel = new Node(null, false);
+            head = sentinel;
+            tail = sentinel;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T transfer(T item, boolean timed, long nanos) {
+            Node node = null;
+            boolean isData = (item != null);
+            Node h;
+            Node t;
+            while (true) {
+                t = tail;
+                h = head;
+                if (h == t || t.isData == isData) {
+                    // empty or same mode, append node
+                    Node next = t.next;
+                    if (t != tail) {
+                        continue;
+                    }
+                    if (next != null) {
+                        // tail is lagging
+                        advanceTail(t, next);
+                        continue;
+                    }
+                    if (timed && nanos <= 0) {
+                        return null;
+                    }
+                    if (node == null) {
+                        node = new Node(item, isData);
+                    }
+                    if (!t.casNext(null, node)) {
+                        continue;
+                    }
+                    advanceTail(t, node);
+                    Object x = awaitFulfill(node, item, timed, nanos);
+                    if (x == node) {
+                        // cancelled
+                        clean(t, node);
+                        return null;
+                    }
+                    if (!node.isOffList()) {
+                        // not unlinked yet, node is sentinel now
+                        advanceHead(t, node);
+                        if (x != null) {
+                            // forget item
+                            node.item = node;
                         }
-                        return;
+                        node.waiter = null;
                     }
+                    return x != null ? (T) x : item;
                 }
-            } else {
-                next = head.next();
-                // head.next == null => sentinel
-                // wait for dequeue thread
-                if (next == null || head != atomicHead.get() || tail != atomicTail.get()) {
+
+                // complementary mode, fulfill first node
+                Node m = h.next;
+                if (t != tail || m == null || h != head) {
+                    // inconsistent read
                     continue;
                 }
-                // head != tail, tail.type != ITEM, head.next != null
-                // set item
-                // 1. dequeue thread, item = null => success
-                // 2. dequeue threads, fulfilled by other enqueue thread, false
-                boolean success = next.casItem(null, item);
-                // move forward
-                atomicHead.compareAndSet(head, next);
-                if (success) {
-                    return;
+                Object x = m.item;
+                if (isData == (x != null) || x == m || !m.casItem(x, item)) {
+                    // m is fulfilled or cancelled, dequeue and retry
+                    advanceHead(h, m);
+                    continue;
                 }
+                advanceHead(h, m);
+                LockSupport.unpark(m.waiter);
+                return x != null ? (T) x : item;
             }
         }
-    }
 
-    public T dequeue() {
-        Node<T> head;
-        Node<T> tail;
-        Node<T> next;
-        Node<T> node = new Node<>();
-        T result;
-        while (true) {
-            head = atomicHead.get();
-            tail = atomicTail.get();
-            if (head == tail || tail.type == NodeType.RESERVATION) {
-                // no dequeue thread or dequeue threads exist
-                next = tail.next();
-                if (next != null) {
-                    atomicTail.compareAndSet(tail, next);
-                } else {
-                    if (tail.casNext(node)) {
-                        atomicTail.compareAndSet(tail, node);
-                        result = node.waitUntilItemBecomeNotNull();
-                        head = atomicHead.get();
-                        if (head.next() == node) {
-                            atomicHead.compareAndSet(head, node);
-                        }
-                        return result;
+        /**
+         * @return item given or taken, or node itself if cancelled
+         */
+        private Object awaitFulfill(Node node, T item, boolean timed, long nanos) {
+            final long deadline = timed ? System.nanoTime() + nanos : 0L;
+            Thread thread = Thread.currentThread();
+            // only node next to be fulfilled spins
+            int spins = (head.next == node) ? (timed ? MAX_TIMED_SPINS : MAX_UNTIMED_SPINS) : 0;
+            Object x;
+            while (true) {
+                if (thread.isInterrupted()) {
+                    node.tryCancel(item);
+                }
+                x = node.item;
+                if (x != item) {
+                    return x;
+                }
+                if (timed) {
+                    nanos = deadline - System.nanoTime();
+                    if (nanos <= 0L) {
+                        node.tryCancel(item);
+                        continue;
                     }
                 }
-            } else {
-                next = head.next();
-                if (next == null || head != atomicHead.get() || tail != atomicTail.get()) {
+                if (spins > 0) {
+                    spins--;
+                } else if (node.waiter == null) {
+                    // set waiter and check again before parking
+                    node.waiter = thread;
+                } else if (!timed) {
+                    LockSupport.park(this);
+                } else if (nanos > SPIN_FOR_TIMEOUT_THRESHOLD) {
+                    LockSupport.parkNanos(this, nanos);
+                }
+            }
+        }
+
+        /**
+         * Unlink cancelled node, or remember its predecessor if node is tail.
+         */
+        private void clean(Node predecessor, Node node) {
+            node.waiter = null;
+            while (predecessor.next == node) {
+                Node h = head;
+                Node hn = h.next;
+                if (hn != null && hn.isCancelled()) {
+                    advanceHead(h, hn);
                     continue;
                 }
-                result = next.item();
-                boolean success = next.casItem(result, null);
-                atomicHead.compareAndSet(head, next);
-                if (success) {
-                    return result;
+                Node t = tail;
+                if (t == h) {
+                    // empty
+                    return;
+                }
+                Node tn = t.next;
+                if (t != tail) {
+                    continue;
+                }
+                if (tn != null) {
+                    advanceTail(t, tn);
+                    continue;
+                }
+                if (node != t) {
+                    // not tail, unlink
+                    Node next = node.next;
+                    if (next == node || predecessor.casNext(node, next)) {
+                        return;
+                    }
+                }
+                // node is tail, unlink previously remembered node first
+                Node dp = cleanMe;
+                if (dp != null) {
+                    Node d = dp.next;
+                    Node dn;
+                    if (d == null || d == dp || !d.isCancelled()
+                            || (d != t && (dn = d.next) != null && dn != d && dp.casNext(d, dn))) {
+                        CLEAN_ME.compareAndSet(this, dp, null);
+                    }
+                    if (dp == predecessor) {
+                        // node is remembered already
+                        return;
+                    }
+                } else if (CLEAN_ME.compareAndSet(this, null, predecessor)) {
+                    return;
                 }
             }
         }
-    }
 
-//    public T dequeue() {
-//        Node<T> head = atomicHead.get();
-//        Node<T> current = head;
-//        Node<T> node = new Node<>();
-//        T result;
-//        while (true) {
-//            if (current.type == NodeType.RESERVATION) { // other dequeue thread exists
-//                // append node
-//                if (current.next() == null && current.casNext(node)) {
-//                    return waitForItem(node, head);
-//                }
-//            } else {
-//                // type == item
-//                if ((result = current.item()) != null) { // not sentinel
-//                    if (current.casItem(result, null)) {
-//                        return result;
-//                    }
-//                }
-//                if (current.next() == null && current.casNext(node)) {
-//                    return waitForItem(node, head);
-//                }
-//            }
-//            current = current.next();
-//        }
-//    }
+        private void advanceHead(Node h, Node nh) {
+            if (h == head && HEAD.compareAndSet(this, h, nh)) {
+                // link to self, so nodes off list are known
+                h.next = h;
+            }
+        }
 
-//    private T waitForItem(Node<T> node, Node<T> head) {
-//        T result = node.waitUntilItemBecomeNotNull();
-//        atomicHead.compareAndSet(head, node);
-//        return result;
-//    }
+        private void advanceTail(Node t, Node nt) {
+            if (tail == t) {
+                TAIL.compareAndSet(this, t, nt);
+            }
+        }
 
-    private enum NodeType {
-        ITEM, RESERVATION;
+        private static final class Node {
+            private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                    AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+            private static final AtomicReferenceFieldUpdater<Node, Object> ITEM =
+                    AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "item");
+
+            volatile Node next;
+            // set to item or null when fulfilled, node itself when cancelled
+            volatile Object item;
+            volatile Thread waiter;
+            final boolean isData;
+
+            Node(Object item, boolean isData) {
+                this.item = item;
+                this.isData = isData;
+            }
+
+            boolean casNext(Node expect, Node update) {
+                return NEXT.compareAndSet(this, expect, update);
+            }
+
+            boolean casItem(Object expect, Object update) {
+                return ITEM.compareAndSet(this, expect, update);
+            }
+
+            void tryCancel(Object expect) {
+                ITEM.compareAndSet(this, expect, this);
+            }
+
+            boolean isCancelled() {
+                return item == this;
+            }
+
+            boolean isOffList() {
+                return next == this;
+            }
+        }
     }
 
-    private static class Node<T> {
-        private final NodeType type;
-        private final AtomicReference<T> atomicItem;
-        private final AtomicReference<Node<T>> atomicNext = new AtomicReference<>(null);
+    /**
+     * Dual stack. A thread finding complementary node on top pushes a fulfilling node and matches it with the
+     * node below, other threads help to pop both before pushing their own.
+     */
+    @SuppressWarnings("Duplicates")
+    private static final class DualStack<T> implements Transferer<T> {
+
+        private static final int REQUEST = 0;
+        private static final int DATA = 1;
+        // or-ed with mode of fulfiller
+        private static final int FULFILLING = 2;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<DualStack, Node> HEAD =
+                AtomicReferenceFieldUpdater.newUpdater(DualStack.class, Node.class, "head");
+
+        private volatile Node head;
 
-        Node() {
-            type = NodeType.RESERVATION;
-            atomicItem = new AtomicReference<>(null);
+        private static boolean isFulfilling(int mode) {
+            return (mode & FULFILLING) != 0;
         }
 
-        Node(T item) {
-            type = NodeType.ITEM;
-            atomicItem = new AtomicReference<>(item);
+        private boolean casHead(Node h, Node nh) {
+            return h == head && HEAD.compareAndSet(this, h, nh);
         }
 
-        boolean casItem(T expected, T updated) {
-            return atomicItem.compareAndSet(expected, updated);
+        /**
+         * Reuse node of failed push if any, fields are published by CAS of head.
+         */
+        private static Node node(Node node, Object item, Node next, int mode) {
+            if (node == null) {
+                node = new Node(item);
+            }
+            node.mode = mode;
+            node.next = next;
+            return node;
         }
 
-        boolean casNext(Node<T> node) {
-            return atomicNext.compareAndSet(null, node);
+        @Override
+        @SuppressWarnings("unchecked")
+        public T transfer(T item, boolean timed, long nanos) {
+            Node node = null;
+            int mode = (item == null) ? REQUEST : DATA;
+            Node h;
+            while (true) {
+                h = head;
+                if (h == null || h.mode == mode) {
+                    // empty or same mode, push node
+                    if (timed && nanos <= 0) {
+                        if (h != null && h.isCancelled()) {
+                            casHead(h, h.next);
+                        } else {
+                            return null;
+                        }
+                    } else if (casHead(h, node = node(node, item, h, mode))) {
+                        Node m = awaitFulfill(node, timed, nanos);
+                        if (m == node) {
+                            // cancelled
+                            clean(node);
+                            return null;
+                        }
+                        if ((h = head) != null && h.next == node) {
+                            // help fulfiller pop both
+                            casHead(h, node.next);
+                        }
+                        return (T) (mode == REQUEST ? m.item : node.item);
+                    }
+                } else if (!isFulfilling(h.mode)) {
+                    // complementary node on top, push fulfilling node
+                    if (h.isCancelled()) {
+                        casHead(h, h.next);
+                    } else if (casHead(h, node = node(node, item, h, FULFILLING | mode))) {
+                        while (true) {
+                            Node m = node.next;
+                            if (m == null) {
+                                // all waiters are gone by cancellation
+                                casHead(node, null);
+                                node = null;
+                                break;
+                            }
+                            Node mn = m.next;
+                            if (m.tryMatch(node)) {
+                                casHead(node, mn);
+                                return (T) (mode == REQUEST ? m.item : node.item);
+                            }
+                            // m is cancelled, unlink
+                            node.casNext(m, mn);
+                        }
+                    }
+                } else {
+                    // help fulfiller on top
+                    Node m = h.next;
+                    if (m == null) {
+                        casHead(h, null);
+                    } else {
+                        Node mn = m.next;
+                        if (m.tryMatch(h)) {
+                            casHead(h, mn);
+                        } else {
+                            h.casNext(m, mn);
+                        }
+                    }
+                }
+            }
         }
 
-        Node<T> next() {
-            return atomicNext.get();
+        /**
+         * @return matching node, or node itself if cancelled
+         */
+        private Node awaitFulfill(Node node, boolean timed, long nanos) {
+            final long deadline = timed ? System.nanoTime() + nanos : 0L;
+            Thread thread = Thread.currentThread();
+            int spins = shouldSpin(node) ? (timed ? MAX_TIMED_SPINS : MAX_UNTIMED_SPINS) : 0;
+            Node m;
+            while (true) {
+                if (thread.isInterrupted()) {
+                    node.tryCancel();
+                }
+                m = node.match;
+                if (m != null) {
+                    return m;
+                }
+                if (timed) {
+                    nanos = deadline - System.nanoTime();
+                    if (nanos <= 0L) {
+                        node.tryCancel();
+                        continue;
+                    }
+                }
+                if (spins > 0) {
+                    spins = shouldSpin(node) ? spins - 1 : 0;
+                } else if (node.waiter == null) {
+                    // set waiter and check again before parking
+                    node.waiter = thread;
+                } else if (!timed) {
+                    LockSupport.park(this);
+                } else if (nanos > SPIN_FOR_TIMEOUT_THRESHOLD) {
+                    LockSupport.parkNanos(this, nanos);
+                }
+            }
         }
 
-        T item() {
-            return atomicItem.get();
+        /**
+         * Spin only if node is on top or a fulfiller is active.
+         */
+        private boolean shouldSpin(Node node) {
+            Node h = head;
+            return h == node || h == null || isFulfilling(h.mode);
         }
 
-        void waitUntilItemBecomeNull() {
-            while (atomicItem.get() != null) {
+        /**
+         * Unlink cancelled nodes from top to the node after cancelled one.
+         */
+        private void clean(Node node) {
+            node.item = null;
+            node.waiter = null;
+            Node past = node.next;
+            if (past != null && past.isCancelled()) {
+                past = past.next;
+            }
+            Node p;
+            while ((p = head) != null && p != past && p.isCancelled()) {
+                casHead(p, p.next);
+            }
+            Node n;
+            while (p != null && p != past) {
+                n = p.next;
+                if (n != null && n.isCancelled()) {
+                    p.casNext(n, n.next);
+                } else {
+                    p = n;
+                }
             }
         }
 
-        T waitUntilItemBecomeNotNull() {
-            T item;
-            while ((item = atomicItem.get()) == null) {
+        private static final class Node {
+            private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                    AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+            private static final AtomicReferenceFieldUpdater<Node, Node> MATCH =
+                    AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "match");
+
+            volatile Node next;
+            // node matched, or node itself when cancelled
+            volatile Node match;
+            volatile Thread waiter;
+            // data, or null for request
+            Object item;
+            int mode;
+
+            Node(Object item) {
+                this.item = item;
+            }
+
+            boolean casNext(Node expect, Node update) {
+                return expect == next && NEXT.compareAndSet(this, expect, update);
+            }
+
+            /**
+             * Match with fulfilling node and wake up waiter.
+             *
+             * @return true if matched with the given node
+             */
+            boolean tryMatch(Node fulfiller) {
+                if (match == null && MATCH.compareAndSet(this, null, fulfiller)) {
+                    Thread waiter = this.waiter;
+                    if (waiter != null) {
+                        this.waiter = null;
+                        LockSupport.unpark(waiter);
+                    }
+                    return true;
+                }
+                return match == fulfiller;
+            }
+
+            void tryCancel() {
+                MATCH.compareAndSet(this, null, this);
+            }
+
+            boolean isCancelled() {
+                return match == this;
             }
-            return item;
         }
     }
 }
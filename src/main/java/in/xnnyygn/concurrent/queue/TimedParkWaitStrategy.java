@@ -0,0 +1,30 @@
+package in.xnnyygn.concurrent.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Park for fixed period on each round. Nobody unparks the waiting thread,
+ * so latency is up to the period, and an idle thread costs almost nothing.
+ */
+public class TimedParkWaitStrategy implements WaitStrategy {
+
+    private final long periodNanos;
+
+    public TimedParkWaitStrategy(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period <= 0");
+        }
+        periodNanos = unit.toNanos(period);
+    }
+
+    @Override
+    public void idle(int round) {
+        LockSupport.parkNanos(periodNanos);
+    }
+
+    @Override
+    public void idle(int round, long remainingNanos) {
+        LockSupport.parkNanos(Math.min(periodNanos, remainingNanos));
+    }
+}
@@ -0,0 +1,34 @@
+package in.xnnyygn.concurrent.queue;
+
+/**
+ * How a thread waits for a condition checked in loop, e.g. queue not empty.
+ * <p>
+ * Strategy is shared by waiting threads, state of one wait is the round passed by caller.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called after a failed check.
+     *
+     * @param round count of failed checks before this one in current wait, from 0
+     */
+    void idle(int round);
+
+    /**
+     * Called after a failed check in a wait with deadline. Strategy must not block longer than time remaining.
+     *
+     * @param round          count of failed checks before this one in current wait, from 0
+     * @param remainingNanos time remaining before deadline, positive
+     */
+    default void idle(int round, long remainingNanos) {
+        idle(round);
+    }
+
+    /**
+     * Called when current wait ends with condition met.
+     *
+     * @param rounds count of failed checks in the wait
+     */
+    default void done(int rounds) {
+    }
+}
@@ -0,0 +1,385 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Lock-free skip list set with compact nodes.
+ * <p>
+ * Unlike {@link SkipListSet3}, there is no index object per level. Upper level references of a node are kept
+ * in one array sized to its level, item and next are volatile fields updated by field updaters,
+ * and deletion is a marker node flagged by its level, appended after the deleted node.
+ * Upper levels are shortcuts only, they are unlinked by searches once the node is deleted.
+ */
+@SuppressWarnings("Duplicates")
+public class CompactSkipListSet<T> implements Iterable<T> {
+
+    private static final double DEFAULT_PROBABILITY = 0.25;
+
+    private final Comparator<T> comparator;
+    private final LevelGenerator levelGenerator;
+    private final Node<T> head;
+    // highest level of towers, 0 if no tower, never decreases
+    private final AtomicInteger highestLevel = new AtomicInteger(0);
+
+    public CompactSkipListSet(Comparator<T> comparator) {
+        this(comparator, DEFAULT_PROBABILITY);
+    }
+
+    /**
+     * @param promotionProbability probability of node being promoted to next level
+     */
+    public CompactSkipListSet(Comparator<T> comparator, double promotionProbability) {
+        Preconditions.checkNotNull(comparator);
+        this.comparator = comparator;
+        levelGenerator = new LevelGenerator(promotionProbability);
+        head = new Node<>(null, levelGenerator.maxLevel(), null);
+    }
+
+    public boolean contains(T item) {
+        Preconditions.checkNotNull(item);
+
+        for (Node<T> node = findPredecessor(item).next; node != null; node = node.next) {
+            T value = node.item;
+            if (value == null) {
+                // deleted or marker
+                continue;
+            }
+            int c = comparator.compare(value, item);
+            if (c >= 0) {
+                return c == 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find a node with item less than the given one on base level, unlinking deleted nodes in towers.
+     *
+     * @return node found, or head
+     */
+    @Nonnull
+    private Node<T> findPredecessor(T item) {
+        restart:
+        while (true) {
+            Node<T> predecessor = head;
+            Node<T> current;
+            for (int level = highestLevel.get(); level > 0; level--) {
+                while ((current = predecessor.tower.get(level - 1)) != null) {
+                    T value = current.item;
+                    if (value == null) {
+                        // current is deleted
+                        if (!predecessor.casTower(level, current, current.tower.get(level - 1))) {
+                            continue restart;
+                        }
+                        continue;
+                    }
+                    if (comparator.compare(value, item) >= 0) {
+                        break;
+                    }
+                    predecessor = current;
+                }
+            }
+            return predecessor;
+        }
+    }
+
+    /**
+     * Help delete current.
+     *
+     * @param predecessor predecessor
+     * @param current     current
+     */
+    private void helpDelete(Node<T> predecessor, Node<T> current) {
+        Node<T> successor = current.next;
+        if (successor == null || !successor.isMarker()) {
+            // step 1 -> 2, insert marker, logical remove
+            current.casNext(successor, Node.ofMarker(successor));
+        } else {
+            // step 2 -> 3, physical remove
+            predecessor.casNext(current, successor.next);
+        }
+    }
+
+    public boolean add(T item) {
+        Preconditions.checkNotNull(item);
+
+        while (true) {
+            for (Node<T> predecessor = findPredecessor(item), current = predecessor.nextNotMarker(); ; ) {
+                if (current != null) {
+                    T value = current.item;
+                    if (value == null) {
+                        // current is deleted, unlink only after marker is appended
+                        helpDelete(predecessor, current);
+                        break; // restart
+                    }
+                    int c = comparator.compare(value, item);
+                    if (c == 0) {
+                        return false;
+                    }
+                    if (c < 0) {
+                        // current.item < item
+                        predecessor = current;
+                        current = current.nextNotMarker();
+                        continue;
+                    }
+                }
+                // 1. no more node
+                // 2. current.item > item
+                // grow at most one level
+                int level = levelGenerator.nextLevel(Math.min(highestLevel.get() + 1, levelGenerator.maxLevel()));
+                Node<T> newNode = new Node<>(item, level, current);
+                if (predecessor.casNext(current, newNode)) {
+                    if (level > 0) {
+                        raiseLevel(level);
+                        linkTower(newNode);
+                    }
+                    return true;
+                }
+                break; // restart
+            }
+        }
+    }
+
+    private void linkTower(Node<T> node) {
+        final T item = node.item;
+        if (item == null) {
+            // node is deleted
+            return;
+        }
+
+        restart:
+        while (true) {
+            if (node.item == null) {
+                return;
+            }
+            Node<T> predecessor = head;
+            Node<T> current;
+            for (int level = highestLevel.get(); level > 0; level--) {
+                while ((current = predecessor.tower.get(level - 1)) != null && current != node) {
+                    T value = current.item;
+                    if (value == null) {
+                        // current is deleted
+                        if (!predecessor.casTower(level, current, current.tower.get(level - 1))) {
+                            continue restart;
+                        }
+                        continue;
+                    }
+                    int c = comparator.compare(value, item);
+                    if (c == 0) {
+                        // tower of another node with same item, node is deleted
+                        return;
+                    }
+                    if (c > 0) {
+                        break;
+                    }
+                    predecessor = current;
+                }
+                if (level <= node.level && current != node) {
+                    node.tower.lazySet(level - 1, current);
+                    if (!predecessor.casTower(level, current, node)) {
+                        continue restart;
+                    }
+                    // node may be deleted at this point, unlinked by later searches
+                }
+            }
+            return;
+        }
+    }
+
+    public boolean remove(T item) {
+        Preconditions.checkNotNull(item);
+
+        while (true) {
+            for (Node<T> predecessor = findPredecessor(item), current = predecessor.nextNotMarker(); ; ) {
+                if (current == null) {
+                    // not found
+                    return false;
+                }
+                T value = current.item;
+                if (value == null) {
+                    // current is deleted, unlink only after marker is appended
+                    helpDelete(predecessor, current);
+                    break; // restart
+                }
+                int c = comparator.compare(value, item);
+                if (c > 0) {
+                    // not found
+                    return false;
+                }
+                if (c < 0) {
+                    // current.item < item
+                    predecessor = current;
+                    current = current.nextNotMarker();
+                    continue;
+                }
+                // c == 0
+                if (!current.casItem(value, null)) {
+                    break; // restart
+                }
+                Node<T> successor;
+                // append marker so no node is inserted after current, then unlink
+                do {
+                    successor = current.next;
+                } while ((successor == null || !successor.isMarker()) && !current.casNext(successor, Node.ofMarker(successor)));
+                predecessor.casNext(current, current.next.next);
+                if (current.level > 0) {
+                    // unlink tower
+                    findPredecessor(item);
+                }
+                return true;
+            }
+        }
+    }
+
+    public T first() {
+        for (Node<T> node = head.next; node != null; node = node.next) {
+            T value = node.item;
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Least item greater than or equal to item, or {@code null}.
+     */
+    public T ceiling(T item) {
+        Preconditions.checkNotNull(item);
+
+        for (Node<T> node = findPredecessor(item).next; node != null; node = node.next) {
+            T value = node.item;
+            if (value != null && comparator.compare(value, item) >= 0) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Weakly consistent iterator in ascending order.
+     */
+    @Override
+    @Nonnull
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    private void raiseLevel(int level) {
+        int current;
+        while ((current = highestLevel.get()) < level && !highestLevel.compareAndSet(current, level)) {
+            // retry
+        }
+    }
+
+    private class Itr implements Iterator<T> {
+        private Node<T> nextNode;
+        private T nextItem;
+        private T lastReturned;
+
+        Itr() {
+            advance(head);
+        }
+
+        private void advance(Node<T> node) {
+            for (node = node.next; node != null; node = node.next) {
+                T value = node.item;
+                if (value != null) {
+                    nextNode = node;
+                    nextItem = value;
+                    return;
+                }
+            }
+            nextNode = null;
+            nextItem = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public T next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = nextItem;
+            advance(nextNode);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            CompactSkipListSet.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    private static final class Node<T> {
+        private static final int MARKER = -1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Object> ITEM =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "item");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        // null if deleted, or for head and marker
+        volatile T item;
+        volatile Node<T> next;
+        // levels above base, MARKER for marker
+        final int level;
+        // reference of level i at i - 1, null if level < 1
+        final AtomicReferenceArray<Node<T>> tower;
+
+        Node(T item, int level, Node<T> next) {
+            this.item = item;
+            this.next = next;
+            this.level = level;
+            tower = level > 0 ? new AtomicReferenceArray<>(level) : null;
+        }
+
+        static <T> Node<T> ofMarker(Node<T> next) {
+            return new Node<>(null, MARKER, next);
+        }
+
+        boolean isMarker() {
+            return level == MARKER;
+        }
+
+        Node<T> nextNotMarker() {
+            Node<T> successor = next;
+            if (successor == null) {
+                return null;
+            }
+            if (successor.isMarker()) {
+                return successor.next;
+            }
+            return successor;
+        }
+
+        boolean casItem(T expect, T update) {
+            return ITEM.compareAndSet(this, expect, update);
+        }
+
+        boolean casNext(Node<T> expect, Node<T> update) {
+            return NEXT.compareAndSet(this, expect, update);
+        }
+
+        boolean casTower(int level, Node<T> expect, Node<T> update) {
+            return tower.compareAndSet(level - 1, expect, update);
+        }
+    }
+}
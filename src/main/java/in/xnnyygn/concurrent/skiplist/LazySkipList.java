@@ -1,30 +1,40 @@
 package in.xnnyygn.concurrent.skiplist;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 @SuppressWarnings("Duplicates")
 public class LazySkipList<T> {
 
-    private static final int MAX_LEVEL = 5;
-    private int highestLevel = MAX_LEVEL;
-    private final ThreadLocalRandom random = ThreadLocalRandom.current();
+    private final LevelGenerator levelGenerator;
+    // highest level of linked nodes, never decreases
+    private final AtomicInteger highestLevel = new AtomicInteger(0);
     private final Node<T> head;
     private final Node<T> tail;
 
     public LazySkipList() {
-        head = new Node<>(Integer.MIN_VALUE);
-        tail = new Node<>(Integer.MAX_VALUE);
-        for (int level = 0; level <= MAX_LEVEL; level++) {
+        this(LevelGenerator.DEFAULT_PROBABILITY);
+    }
+
+    /**
+     * @param promotionProbability probability of node being promoted to next level
+     */
+    public LazySkipList(double promotionProbability) {
+        levelGenerator = new LevelGenerator(promotionProbability);
+        int maxLevel = levelGenerator.maxLevel();
+        head = new Node<>(Integer.MIN_VALUE, maxLevel);
+        tail = new Node<>(Integer.MAX_VALUE, maxLevel);
+        for (int level = 0; level <= maxLevel; level++) {
             head.next[level] = tail;
         }
     }
 
     @SuppressWarnings("unchecked")
     public boolean contains(T x) {
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = (Node<T>[]) new Node[searchLevel + 1];
+        Node<T>[] successors = (Node<T>[]) new Node[searchLevel + 1];
         int levelFound = find(x, predecessors, successors);
         if (levelFound != -1) {
             Node<T> node = successors[levelFound];
@@ -33,26 +43,22 @@ public class LazySkipList<T> {
         return false;
     }
 
-    private void updateHighestLevel() {
-        head.lock();
-        try {
-            for (int level = MAX_LEVEL; level >= 0; level--) {
-                if (head.next[level] != tail) {
-                    highestLevel = level;
-                    break;
-                }
-            }
-        } finally {
-            head.unlock();
+    private void raiseLevel(int level) {
+        int current;
+        while ((current = highestLevel.get()) < level && !highestLevel.compareAndSet(current, level)) {
+            // retry
         }
     }
 
+    /**
+     * Find predecessors and successors from the highest level predecessors can hold.
+     */
     private int find(T x, Node<T>[] predecessors, Node<T>[] successors) {
         int key = x.hashCode();
         int levelFound = -1;
         Node<T> predecessor = head;
         Node<T> current;
-        for (int level = highestLevel; level >= 0; level--) {
+        for (int level = predecessors.length - 1; level >= 0; level--) {
             current = predecessor.next[level];
             while (key > current.key) {
                 predecessor = current;
@@ -69,9 +75,13 @@ public class LazySkipList<T> {
 
     @SuppressWarnings("unchecked")
     public boolean add(T x) {
-        int topLevel = random.nextInt(MAX_LEVEL) + 1;
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        // grow at most one level
+        int topLevel = levelGenerator.nextLevel(Math.min(highestLevel.get() + 1, levelGenerator.maxLevel()));
+        // raise before linking, so level of any linked node is not higher than highest level
+        raiseLevel(topLevel);
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = (Node<T>[]) new Node[searchLevel + 1];
+        Node<T>[] successors = (Node<T>[]) new Node[searchLevel + 1];
         int levelFound;
         Node<T> nodeFound;
         int highestLocked;
@@ -121,22 +131,23 @@ public class LazySkipList<T> {
                 for (level = 0; level <= highestLocked; level++) {
                     predecessors[level].unlock();
                 }
-                updateHighestLevel();
             }
         }
     }
 
     @SuppressWarnings("unchecked")
     public boolean remove(T x) {
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        // not lower than level of any linked node
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = (Node<T>[]) new Node[searchLevel + 1];
+        Node<T>[] successors = (Node<T>[]) new Node[searchLevel + 1];
         int levelFound;
         boolean marked = false;
         int topLevel;
         Node<T> victim = null;
         Node<T> predecessor;
         boolean valid;
-        int highestLevel;
+        int highestLocked;
         int level;
         while (true) {
             levelFound = find(x, predecessors, successors);
@@ -163,12 +174,12 @@ public class LazySkipList<T> {
 
             topLevel = victim.topLevel;
             valid = true;
-            highestLevel = -1;
+            highestLocked = -1;
             try {
                 for (level = 0; (valid && level <= topLevel); level++) {
                     predecessor = predecessors[level];
                     predecessor.lock();
-                    highestLevel = level;
+                    highestLocked = level;
                     valid = !predecessor.marked && predecessor.next[level] == victim;
                 }
                 if (!valid) {
@@ -180,14 +191,29 @@ public class LazySkipList<T> {
                 victim.unlock();
                 return true;
             } finally {
-                for (level = 0; level <= highestLevel; level++) {
+                for (level = 0; level <= highestLocked; level++) {
                     predecessors[level].unlock();
                 }
-                updateHighestLevel();
             }
         }
     }
 
+    /**
+     * Count of removed nodes still linked at any level, zero when no update is in progress.
+     */
+    int removedLinked() {
+        int count = 0;
+        Node<T> node;
+        for (int level = 0; level <= levelGenerator.maxLevel(); level++) {
+            for (node = head.next[level]; node != tail; node = node.next[level]) {
+                if (node.marked) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     private static class Node<T> {
         private final Lock lock = new ReentrantLock();
         private final int key;
@@ -198,11 +224,11 @@ public class LazySkipList<T> {
         private final int topLevel;
 
         @SuppressWarnings("unchecked")
-        Node(int key) {
+        Node(int key, int maxLevel) {
             this.key = key;
             value = null;
-            next = (Node<T>[]) new Node[MAX_LEVEL + 1];
-            topLevel = MAX_LEVEL;
+            next = (Node<T>[]) new Node[maxLevel + 1];
+            topLevel = maxLevel;
         }
 
         @SuppressWarnings("unchecked")
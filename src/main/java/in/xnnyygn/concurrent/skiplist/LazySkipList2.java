@@ -1,67 +1,100 @@
 package in.xnnyygn.concurrent.skiplist;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.locks.Lock;
+import com.google.common.base.Preconditions;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Lazy skip list ordered by comparator.
+ * <p>
+ * Reads take no lock. An item is present only if its node is fully linked and not marked,
+ * references are published by volatile writes after the node is initialized, so readers and iterators
+ * never see a partially built node as present.
+ * <p>
+ * Writers try to lock predecessors without blocking first. A predecessor locked by another writer is
+ * likely to change, so the writer searches again instead of queueing behind it, and blocks only after a failed attempt.
+ */
 @SuppressWarnings("Duplicates")
 public class LazySkipList2<T> {
 
-    private static final int MAX_LEVEL = 5;
-    private int highestLevel = MAX_LEVEL;
-    private final ThreadLocalRandom random = ThreadLocalRandom.current();
+    private final Comparator<T> comparator;
+    private final LevelGenerator levelGenerator;
+    // highest level of linked nodes, never decreases
+    private final AtomicInteger highestLevel = new AtomicInteger(0);
     private final Node<T> head;
     private final Node<T> tail;
 
-    public LazySkipList2() {
-        head = new Node<>(Integer.MIN_VALUE);
-        tail = new Node<>(Integer.MAX_VALUE);
-        for (int level = 0; level <= MAX_LEVEL; level++) {
-            head.next[level] = tail;
-        }
+    public LazySkipList2(Comparator<T> comparator) {
+        this(comparator, LevelGenerator.DEFAULT_PROBABILITY);
     }
 
-    @SuppressWarnings("unchecked")
-    public boolean contains(T x) {
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        int levelFound = find(x, predecessors, successors);
-        if (levelFound != -1) {
-            Node<T> node = successors[levelFound];
-            return !node.marked && node.fullyLinked;
+    /**
+     * @param promotionProbability probability of node being promoted to next level
+     */
+    public LazySkipList2(Comparator<T> comparator, double promotionProbability) {
+        Preconditions.checkNotNull(comparator);
+        this.comparator = comparator;
+        levelGenerator = new LevelGenerator(promotionProbability);
+        int maxLevel = levelGenerator.maxLevel();
+        head = new Node<>(null, maxLevel);
+        tail = new Node<>(null, maxLevel);
+        for (int level = 0; level <= maxLevel; level++) {
+            head.next.set(level, tail);
         }
-        return false;
+        head.fullyLinked = true;
+        tail.fullyLinked = true;
     }
 
-    private void updateHighestLevel() {
-        head.lock();
-        try {
-            for (int level = MAX_LEVEL; level >= 0; level--) {
-                if (head.next[level] != tail) {
-                    highestLevel = level;
-                    break;
-                }
+    /**
+     * Compare node with item, tail is greater than any item.
+     */
+    private int compare(Node<T> node, T x) {
+        return node == tail ? 1 : comparator.compare(node.item, x);
+    }
+
+    /**
+     * Wait-free, no lock and no allocation.
+     */
+    public boolean contains(T x) {
+        Preconditions.checkNotNull(x);
+
+        Node<T> predecessor = head;
+        Node<T> current;
+        int c;
+        for (int level = highestLevel.get(); level >= 0; level--) {
+            current = predecessor.next(level);
+            while ((c = compare(current, x)) < 0) {
+                predecessor = current;
+                current = current.next(level);
+            }
+            if (c == 0) {
+                return current.isPresent();
             }
-        } finally {
-            head.unlock();
         }
+        return false;
     }
 
+    /**
+     * Find predecessors and successors from the highest level predecessors can hold.
+     *
+     * @return highest level where node of x is found, or -1
+     */
     private int find(T x, Node<T>[] predecessors, Node<T>[] successors) {
-        int key = x.hashCode();
         int levelFound = -1;
         Node<T> predecessor = head;
         Node<T> current;
-        for (int level = highestLevel; level >= 0; level--) {
-            current = predecessor.next[level];
-            while (key > current.key) {
+        for (int level = predecessors.length - 1; level >= 0; level--) {
+            current = predecessor.next(level);
+            while (compare(current, x) < 0) {
                 predecessor = current;
-                current = current.next[level];
+                current = current.next(level);
             }
-            if (levelFound == -1 && current.key == key && current.values.contains(x)) {
+            if (levelFound == -1 && current != tail && comparator.compare(current.item, x) == 0) {
                 levelFound = level;
             }
             predecessors[level] = predecessor;
@@ -70,17 +103,23 @@ public class LazySkipList2<T> {
         return levelFound;
     }
 
-    @SuppressWarnings("unchecked")
     public boolean add(T x) {
-        int topLevel = random.nextInt(MAX_LEVEL) + 1;
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        Preconditions.checkNotNull(x);
+
+        // grow at most one level
+        int topLevel = levelGenerator.nextLevel(Math.min(highestLevel.get() + 1, levelGenerator.maxLevel()));
+        // raise before linking, so level of any linked node is not higher than highest level
+        raiseLevel(topLevel);
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = newNodes(searchLevel + 1);
+        Node<T>[] successors = newNodes(searchLevel + 1);
         int levelFound;
         Node<T> nodeFound;
         int highestLocked;
         Node<T> predecessor;
         Node<T> successor;
         boolean valid;
+        boolean contended = false;
         Node<T> node;
         int level;
 
@@ -93,16 +132,7 @@ public class LazySkipList2<T> {
                     // wait for another thread to complete linking
                     while (!nodeFound.fullyLinked) {
                     }
-                    nodeFound.lock();
-                    try {
-                        if (nodeFound.values.contains(x)) {
-                            return false;
-                        }
-                        nodeFound.values.add(x);
-                        return true;
-                    }finally {
-                        nodeFound.unlock();
-                    }
+                    return false;
                 }
                 continue;
             }
@@ -113,19 +143,24 @@ public class LazySkipList2<T> {
                 for (level = 0; valid && (level <= topLevel); level++) {
                     predecessor = predecessors[level];
                     successor = successors[level];
-                    predecessor.lock();
+                    if (!predecessor.lock(contended)) {
+                        contended = true;
+                        valid = false;
+                        break;
+                    }
                     highestLocked = level;
-                    valid = !predecessor.marked && !successor.marked && predecessor.next[level] == successor;
+                    valid = !predecessor.marked && !successor.marked && predecessor.next(level) == successor;
                 }
                 if (!valid) {
                     continue;
                 }
-                node = new Node(x, topLevel);
+                node = new Node<>(x, topLevel);
                 for (level = 0; level <= topLevel; level++) {
-                    node.next[level] = successors[level];
+                    node.next.lazySet(level, successors[level]);
                 }
+                // publish node after its references
                 for (level = 0; level <= topLevel; level++) {
-                    predecessors[level].next[level] = node;
+                    predecessors[level].next.set(level, node);
                 }
                 node.fullyLinked = true;
                 return true;
@@ -133,107 +168,236 @@ public class LazySkipList2<T> {
                 for (level = 0; level <= highestLocked; level++) {
                     predecessors[level].unlock();
                 }
-                updateHighestLevel();
             }
         }
     }
 
-    @SuppressWarnings({"unchecked"})
     public boolean remove(T x) {
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        Preconditions.checkNotNull(x);
+
+        // not lower than level of any linked node
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = newNodes(searchLevel + 1);
+        Node<T>[] successors = newNodes(searchLevel + 1);
         int levelFound;
         boolean marked = false;
-        int topLevel;
+        boolean contended = false;
+        int topLevel = -1;
         Node<T> victim = null;
         Node<T> predecessor;
         boolean valid;
-        int highestLevel;
+        int highestLocked;
         int level;
         while (true) {
             levelFound = find(x, predecessors, successors);
-            if (levelFound == -1) {
-                return false;
-            }
-            victim = successors[levelFound];
-            // not marked by current thread
-            if (!marked && (!victim.fullyLinked || victim.topLevel != levelFound || victim.marked)) {
-                return false;
-            }
             if (!marked) {
+                if (levelFound == -1) {
+                    return false;
+                }
+                victim = successors[levelFound];
+                if (!victim.fullyLinked || victim.topLevel != levelFound || victim.marked) {
+                    return false;
+                }
                 // victim's lock is required because lock coupling
-                victim.lock();
+                victim.lock(true);
                 // re-check, victim must be removed by another thread
-                if (victim.marked || !victim.values.contains(x)) {
+                if (victim.marked) {
                     victim.unlock();
                     return false;
                 }
-
-                victim.values.remove(x);
-                if(!victim.values.isEmpty()) {
-                    victim.unlock();
-                    return true;
-                }
+                // mark and process
+                victim.marked = true;
+                marked = true;
+                topLevel = victim.topLevel;
             }
-            // mark and process
-            victim.marked = true;
-            marked = true;
 
-            topLevel = victim.topLevel;
             valid = true;
-            highestLevel = -1;
+            highestLocked = -1;
             try {
                 for (level = 0; (valid && level <= topLevel); level++) {
                     predecessor = predecessors[level];
-                    predecessor.lock();
-                    highestLevel = level;
-                    valid = !predecessor.marked && predecessor.next[level] == victim;
+                    if (!predecessor.lock(contended)) {
+                        contended = true;
+                        valid = false;
+                        break;
+                    }
+                    highestLocked = level;
+                    valid = !predecessor.marked && predecessor.next(level) == victim;
                 }
                 if (!valid) {
                     continue;
                 }
                 for (level = topLevel; level >= 0; level--) {
-                    predecessors[level].next[level] = victim.next[level];
+                    predecessors[level].next.set(level, victim.next(level));
                 }
                 victim.unlock();
                 return true;
             } finally {
-                for (level = 0; level <= highestLevel; level++) {
+                for (level = 0; level <= highestLocked; level++) {
                     predecessors[level].unlock();
                 }
-                updateHighestLevel();
             }
         }
     }
 
+    /**
+     * Least item greater than or equal to x, or {@code null}.
+     */
+    public T ceiling(T x) {
+        Preconditions.checkNotNull(x);
+        return ceilingNode(x, true).item;
+    }
+
+    /**
+     * Greatest item less than or equal to x, or {@code null}.
+     */
+    public T floor(T x) {
+        Preconditions.checkNotNull(x);
+        return floorNode(x, true).item;
+    }
+
+    /**
+     * Weakly consistent iterator in ascending order, from the least item greater than or equal to {@code from}.
+     */
+    public Iterator<T> ceilingIterator(T from) {
+        Preconditions.checkNotNull(from);
+        return new Itr(ceilingNode(from, true), true);
+    }
+
+    /**
+     * Weakly consistent iterator in descending order, from the greatest item less than or equal to {@code from}.
+     * Each step is a search from head.
+     */
+    public Iterator<T> floorIterator(T from) {
+        Preconditions.checkNotNull(from);
+        return new Itr(floorNode(from, true), false);
+    }
+
+    /**
+     * @return first present node after x, or tail
+     */
+    private Node<T> ceilingNode(T x, boolean inclusive) {
+        Node<T> predecessor = head;
+        Node<T> current = null;
+        for (int level = highestLevel.get(); level >= 0; level--) {
+            current = predecessor.next(level);
+            while (compareForCeiling(current, x, inclusive)) {
+                predecessor = current;
+                current = current.next(level);
+            }
+        }
+        return firstPresent(current);
+    }
+
+    private boolean compareForCeiling(Node<T> node, T x, boolean inclusive) {
+        int c = compare(node, x);
+        return c < 0 || (c == 0 && !inclusive);
+    }
+
+    private Node<T> firstPresent(Node<T> node) {
+        // no node is inserted after a marked node, so its references are still in order
+        while (node != tail && !node.isPresent()) {
+            node = node.next(0);
+        }
+        return node;
+    }
+
+    /**
+     * @return last present node before x, or head
+     */
+    private Node<T> floorNode(T x, boolean inclusive) {
+        while (true) {
+            Node<T> predecessor = head;
+            Node<T> current = null;
+            for (int level = highestLevel.get(); level >= 0; level--) {
+                current = predecessor.next(level);
+                while (compare(current, x) < 0) {
+                    predecessor = current;
+                    current = current.next(level);
+                }
+            }
+            if (inclusive && current != tail && comparator.compare(current.item, x) == 0 && current.isPresent()) {
+                return current;
+            }
+            if (predecessor == head || predecessor.isPresent()) {
+                return predecessor;
+            }
+            // predecessor is being added or removed, search before it
+            x = predecessor.item;
+            inclusive = false;
+        }
+    }
+
+    private void raiseLevel(int level) {
+        int current;
+        while ((current = highestLevel.get()) < level && !highestLevel.compareAndSet(current, level)) {
+            // retry
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<T>[] newNodes(int length) {
+        return (Node<T>[]) new Node[length];
+    }
+
+    private class Itr implements Iterator<T> {
+        private final boolean ascending;
+        private Node<T> nextNode;
+
+        Itr(Node<T> start, boolean ascending) {
+            this.ascending = ascending;
+            nextNode = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != head && nextNode != tail;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = nextNode.item;
+            nextNode = ascending ? firstPresent(nextNode.next(0)) : floorNode(item, false);
+            return item;
+        }
+    }
+
     private static class Node<T> {
-        private final Lock lock = new ReentrantLock();
-        private final int key;
-        private final List<T> values;
-        private final Node<T>[] next;
+        private final ReentrantLock lock = new ReentrantLock();
+        // null for head and tail
+        private final T item;
+        private final AtomicReferenceArray<Node<T>> next;
         private volatile boolean marked = false;
         private volatile boolean fullyLinked = false;
         private final int topLevel;
 
-        @SuppressWarnings("unchecked")
-        Node(int key) {
-            this.key = key;
-            values = Collections.emptyList();
-            next = (Node<T>[]) new Node[MAX_LEVEL + 1];
-            topLevel = MAX_LEVEL;
-        }
-
-        @SuppressWarnings("unchecked")
         Node(T x, int height) {
-            key = x.hashCode();
-            values = new LinkedList<>();
-            values.add(x);
-            next = (Node<T>[]) new Node[height + 1];
+            item = x;
+            next = new AtomicReferenceArray<>(height + 1);
             topLevel = height;
         }
 
-        void lock() {
-            lock.lock();
+        Node<T> next(int level) {
+            return next.get(level);
+        }
+
+        boolean isPresent() {
+            return fullyLinked && !marked;
+        }
+
+        /**
+         * @param blocking wait for lock or not
+         * @return true if locked
+         */
+        boolean lock(boolean blocking) {
+            if (blocking) {
+                lock.lock();
+                return true;
+            }
+            return lock.tryLock();
         }
 
         void unlock() {
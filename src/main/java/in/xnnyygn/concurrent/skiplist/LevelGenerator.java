@@ -0,0 +1,44 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random top level of new node, promoted to next level with fixed probability.
+ * Random source of calling thread is used, no allocation per call.
+ */
+final class LevelGenerator {
+
+    static final double DEFAULT_PROBABILITY = 0.5;
+
+    private final int threshold;
+    private final int maxLevel;
+
+    LevelGenerator(double probability) {
+        Preconditions.checkArgument(probability > 0 && probability < 1, "probability must be in (0, 1)");
+        threshold = (int) (probability * (1L << 31));
+        // enough levels for 2^32 distinct keys
+        maxLevel = Math.min(32, (int) Math.ceil(32 / (Math.log(1 / probability) / Math.log(2))));
+    }
+
+    /**
+     * Highest level a node may have, 0 based.
+     */
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * @param limit highest level allowed, at most {@link #maxLevel()}
+     * @return level in [0, limit]
+     */
+    int nextLevel(int limit) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int level = 0;
+        while (level < limit && (random.nextInt() >>> 1) < threshold) {
+            level++;
+        }
+        return level;
+    }
+}
@@ -1,21 +1,35 @@
 package in.xnnyygn.concurrent.skiplist;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicMarkableReference;
 
 @SuppressWarnings("Duplicates")
 public class LockFreeSkipList<T> {
 
-    private static final int MAX_LEVEL = 5;
     private static final int NOT_FOUND = -1;
-    private final ThreadLocalRandom random = ThreadLocalRandom.current();
+    private final LevelGenerator levelGenerator;
     private final Node<T> head;
+    // highest level of linked nodes, never decreases
+    private final AtomicInteger highestLevel = new AtomicInteger(0);
 
     public LockFreeSkipList() {
-        head = new Node<>(Integer.MIN_VALUE);
-        Node<T> tail = new Node<>(Integer.MAX_VALUE);
-        for (int level = 0; level <= MAX_LEVEL; level++) {
+        this(LevelGenerator.DEFAULT_PROBABILITY);
+    }
+
+    /**
+     * @param promotionProbability probability of node being promoted to next level
+     */
+    public LockFreeSkipList(double promotionProbability) {
+        levelGenerator = new LevelGenerator(promotionProbability);
+        int maxLevel = levelGenerator.maxLevel();
+        head = new Node<>(Integer.MIN_VALUE, maxLevel);
+        Node<T> tail = new Node<>(Integer.MAX_VALUE, maxLevel);
+        for (int level = 0; level <= maxLevel; level++) {
             head.next[level] = new AtomicMarkableReference<>(tail, false);
+            // tail is never passed, but searches read its successor
+            tail.next[level] = new AtomicMarkableReference<>(null, false);
         }
     }
 
@@ -25,7 +39,7 @@ public class LockFreeSkipList<T> {
         Node<T> current = null;
         Node<T> successor;
         boolean[] markHolder = new boolean[1];
-        for (int level = MAX_LEVEL; level >= 0; level--) {
+        for (int level = highestLevel.get(); level >= 0; level--) {
             current = predecessor.next(level);
             while (true) {
                 successor = current.nextAndMark(level, markHolder);
@@ -45,39 +59,45 @@ public class LockFreeSkipList<T> {
         return current.key == key;
     }
 
+    /**
+     * Find predecessors and successors from the highest level predecessors can hold.
+     */
     private boolean find(T x, Node<T>[] predecessors, Node<T>[] successors) {
         int key = x.hashCode();
-        Node<T> predecessor = head;
+        Node<T> predecessor;
         Node<T> current = null;
         Node<T> successor;
         boolean[] markHolder = new boolean[1];
         boolean snip;
 
         retry:
-        for (int level = MAX_LEVEL; level >= 0; level--) {
-            current = predecessor.next(level);
-            while (true) {
-                successor = current.nextAndMark(level, markHolder);
-                while (markHolder[0]) {
-                    snip = predecessor.next[level].compareAndSet(current, successor, false, false);
-                    if (!snip) {
-                        continue retry;
-                    }
-                    current = predecessor.next(level);
+        while (true) {
+            predecessor = head;
+            for (int level = predecessors.length - 1; level >= 0; level--) {
+                current = predecessor.next(level);
+                while (true) {
                     successor = current.nextAndMark(level, markHolder);
-                }
+                    while (markHolder[0]) {
+                        snip = predecessor.next[level].compareAndSet(current, successor, false, false);
+                        if (!snip) {
+                            continue retry;
+                        }
+                        current = predecessor.next(level);
+                        successor = current.nextAndMark(level, markHolder);
+                    }
 
-                if (current.key < key) {
-                    predecessor = current;
-                    current = successor;
-                } else {
-                    break;
+                    if (current.key < key) {
+                        predecessor = current;
+                        current = successor;
+                    } else {
+                        break;
+                    }
                 }
+                predecessors[level] = predecessor;
+                successors[level] = current;
             }
-            predecessors[level] = predecessor;
-            successors[level] = current;
+            return current.key == key;
         }
-        return current.key == key;
     }
 
     private boolean find2(T x, Node<T>[] predecessors, Node<T>[] successors) {
@@ -89,7 +109,7 @@ public class LockFreeSkipList<T> {
         boolean[] markHolder = new boolean[1];
 
         retry:
-        for (int level = MAX_LEVEL; level >= 0; level--) {
+        for (int level = predecessors.length - 1; level >= 0; level--) {
             while (true) {
                 node1 = node0.next(level);
                 node2 = node1;
@@ -119,10 +139,15 @@ public class LockFreeSkipList<T> {
 
     @SuppressWarnings("unchecked")
     public boolean add(T x) {
-        int topLevel = random.nextInt(MAX_LEVEL) + 1;
+        // grow at most one level
+        int topLevel = levelGenerator.nextLevel(Math.min(highestLevel.get() + 1, levelGenerator.maxLevel()));
+        // raise before linking, so level of any linked node is not higher than highest level
+        raiseLevel(topLevel);
         int key = x.hashCode();
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        // search from highest level, not less than top level
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = (Node<T>[]) new Node[searchLevel + 1];
+        Node<T>[] successors = (Node<T>[]) new Node[searchLevel + 1];
         Node<T> node = new Node<>(key, x, topLevel);
 
         while (true) {
@@ -146,8 +171,10 @@ public class LockFreeSkipList<T> {
 
     @SuppressWarnings("unchecked")
     public boolean remove(T x) {
-        Node<T>[] predecessors = (Node<T>[]) new Node[MAX_LEVEL + 1];
-        Node<T>[] successors = (Node<T>[]) new Node[MAX_LEVEL + 1];
+        // not lower than level of any linked node
+        int searchLevel = highestLevel.get();
+        Node<T>[] predecessors = (Node<T>[]) new Node[searchLevel + 1];
+        Node<T>[] successors = (Node<T>[]) new Node[searchLevel + 1];
         Node<T> next;
         boolean[] markHolder = new boolean[1];
         boolean iMarkedIt;
@@ -178,16 +205,99 @@ public class LockFreeSkipList<T> {
         }
     }
 
+    /**
+     * Load items sorted by hash code into an empty list, building every level bottom-up in one pass.
+     * Items with the same hash code as the previous one are skipped.
+     * Must not run concurrently with other writers.
+     *
+     * @return number of items loaded
+     * @throws IllegalStateException    if list is not empty
+     * @throws IllegalArgumentException if items are not sorted
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public int bulkLoad(Iterator<T> sorted) {
+        Node<T> tail = head.next(0);
+        if (tail.key != Integer.MAX_VALUE) {
+            throw new IllegalStateException("list is not empty");
+        }
+        // first and last node of each level
+        int maxLevel = levelGenerator.maxLevel();
+        Node<T>[] firsts = (Node<T>[]) new Node[maxLevel + 1];
+        Node<T>[] lasts = (Node<T>[]) new Node[maxLevel + 1];
+        Arrays.fill(lasts, head);
+        int count = 0;
+        while (sorted.hasNext()) {
+            T x = sorted.next();
+            int key = x.hashCode();
+            if (count > 0) {
+                if (key < lasts[0].key) {
+                    throw new IllegalArgumentException("items are not sorted");
+                }
+                if (key == lasts[0].key) {
+                    continue;
+                }
+            }
+            count++;
+            // every second node reaches level 1, every fourth level 2, and so on
+            int topLevel = Math.min(Integer.numberOfTrailingZeros(count), maxLevel);
+            Node<T> node = new Node<>(key, x, topLevel);
+            for (int level = 0; level <= topLevel; level++) {
+                node.next[level] = new AtomicMarkableReference<>(tail, false);
+                if (lasts[level] == head) {
+                    firsts[level] = node;
+                } else {
+                    // not published yet
+                    lasts[level].next[level].set(node, false);
+                }
+                lasts[level] = node;
+            }
+        }
+        int topLevel = 0;
+        while (topLevel < maxLevel && firsts[topLevel + 1] != null) {
+            topLevel++;
+        }
+        raiseLevel(topLevel);
+        // publish from bottom, upper levels are shortcuts only
+        for (int level = 0; level <= topLevel && firsts[level] != null; level++) {
+            if (!head.next[level].compareAndSet(tail, firsts[level], false, false)) {
+                throw new IllegalStateException("concurrent modification");
+            }
+        }
+        return count;
+    }
+
+    private void raiseLevel(int level) {
+        int current;
+        while ((current = highestLevel.get()) < level && !highestLevel.compareAndSet(current, level)) {
+            // retry
+        }
+    }
+
+    int highestLevel() {
+        return highestLevel.get();
+    }
+
+    /**
+     * Highest level head has a successor other than tail, not accurate under concurrent updates.
+     */
+    int linkedLevel() {
+        int level = levelGenerator.maxLevel();
+        while (level > 0 && head.next(level).key == Integer.MAX_VALUE) {
+            level--;
+        }
+        return level;
+    }
+
     private static class Node<T> {
         private final int key;
         private final T value;
         private final AtomicMarkableReference<Node<T>>[] next;
 
         @SuppressWarnings("unchecked")
-        Node(int key) {
+        Node(int key, int maxLevel) {
             this.key = key;
             value = null;
-            next = (AtomicMarkableReference<Node<T>>[]) new AtomicMarkableReference[MAX_LEVEL + 1];
+            next = (AtomicMarkableReference<Node<T>>[]) new AtomicMarkableReference[maxLevel + 1];
         }
 
         @SuppressWarnings("unchecked")
@@ -0,0 +1,512 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Key-value variant of {@link SkipListSet3}.
+ * <p>
+ * Node has a final key and a CAS-able value, {@code null} value means deleted. All updates find the node
+ * of key once and CAS its value, so read-modify-write like {@link #merge(Object, Object, BiFunction)}
+ * is atomic without locks. Functions may be applied more than once under contention.
+ * </p>
+ *
+ * @param <K>
+ * @param <V>
+ */
+@SuppressWarnings("Duplicates")
+public class SkipListMap3<K, V> {
+
+    private final Comparator<K> comparator;
+    private final AtomicReference<HeadIndex<K, V>> headIndex;
+
+    public SkipListMap3(Comparator<K> comparator) {
+        Preconditions.checkNotNull(comparator);
+        this.comparator = comparator;
+
+        Node<K, V> node = Node.ofNormal(null, null, null);
+        headIndex = new AtomicReference<>(new HeadIndex<>(node, null, null, 1));
+    }
+
+    public V get(K key) {
+        Preconditions.checkNotNull(key);
+
+        for (Node<K, V> node = findNode(key, false); node != null; node = node.nextNotMarker()) {
+            V value = node.value.get();
+            if (value == null) {
+                // node is removed or head
+                continue;
+            }
+            int c = comparator.compare(node.key, key);
+            if (c == 0) {
+                return value;
+            }
+            if (c > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return previous value, or {@code null}
+     */
+    public V put(K key, V value) {
+        Preconditions.checkNotNull(value);
+        return update(key, current -> value, true);
+    }
+
+    /**
+     * @return current value, or {@code null} if value is put
+     */
+    public V putIfAbsent(K key, V value) {
+        Preconditions.checkNotNull(value);
+        return update(key, current -> current != null ? current : value, true);
+    }
+
+    /**
+     * Replace value only if key is present.
+     *
+     * @return previous value, or {@code null}
+     */
+    public V replace(K key, V value) {
+        Preconditions.checkNotNull(value);
+        return update(key, current -> current != null ? value : null, true);
+    }
+
+    public boolean replace(K key, V oldValue, V newValue) {
+        Preconditions.checkNotNull(oldValue);
+        Preconditions.checkNotNull(newValue);
+        return oldValue.equals(update(key, current -> oldValue.equals(current) ? newValue : current, true));
+    }
+
+    /**
+     * @return previous value, or {@code null}
+     */
+    public V remove(K key) {
+        return update(key, current -> null, true);
+    }
+
+    public boolean remove(K key, V value) {
+        Preconditions.checkNotNull(value);
+        return value.equals(update(key, current -> value.equals(current) ? null : current, true));
+    }
+
+    /**
+     * @param function (key, current value or {@code null}) to new value, {@code null} to remove
+     * @return new value
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        Preconditions.checkNotNull(function);
+        return update(key, current -> function.apply(key, current), false);
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        Preconditions.checkNotNull(function);
+        return update(key, current -> current != null ? current : function.apply(key), false);
+    }
+
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        Preconditions.checkNotNull(function);
+        return update(key, current -> current != null ? function.apply(key, current) : null, false);
+    }
+
+    /**
+     * Put value if absent, otherwise combine current value and value, {@code null} result removes key.
+     *
+     * @return new value
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> function) {
+        Preconditions.checkNotNull(value);
+        Preconditions.checkNotNull(function);
+        return update(key, current -> current == null ? value : function.apply(current, value), false);
+    }
+
+    /**
+     * Not constant time, walk base level.
+     */
+    public int size() {
+        int n = 0;
+        for (Node<K, V> node = headIndex.get().node.next.get(); node != null; node = node.next.get()) {
+            if (node.value.get() != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Find node of key, CAS its value to the result of function, or insert a new node if absent.
+     *
+     * @param function current value or {@code null} if absent to new value, {@code null} to remove,
+     *                 the same value for no change
+     * @param returnOld return old value if true, otherwise new value
+     */
+    private V update(K key, Function<? super V, ? extends V> function, boolean returnOld) {
+        Preconditions.checkNotNull(key);
+
+        while (true) {
+            for (Node<K, V> predecessor = findNode(key, true), current = predecessor.next.get(); ; ) {
+
+                if (current != null) {
+                    if (current.marker) {
+                        // predecessor is deleted
+                        break; // restart
+                    }
+                    V value = current.value.get();
+                    if (value == null) {
+                        // current is deleted
+                        helpDelete(predecessor, current);
+                        break; // restart
+                    }
+                    int c = comparator.compare(current.key, key);
+                    if (c == 0) {
+                        V newValue = function.apply(value);
+                        if (newValue == value) {
+                            return value;
+                        }
+                        if (!current.casValue(value, newValue)) {
+                            // value changed, apply again
+                            continue;
+                        }
+                        if (newValue == null) {
+                            unlink(predecessor, current);
+                        }
+                        return returnOld ? value : newValue;
+                    }
+                    if (c < 0) {
+                        // current.key < key
+                        predecessor = current;
+                        current = current.next.get();
+                        continue;
+                    }
+                }
+                // 1. no more node
+                // 2. current.key > key
+                V newValue = function.apply(null);
+                if (newValue == null) {
+                    return null;
+                }
+                Node<K, V> newNode = Node.ofNormal(key, newValue, current);
+                if (predecessor.casNext(current, newNode)) {
+                    // ok
+                    buildIndices(randomLevel(), newNode);
+                    return returnOld ? null : newValue;
+                }
+                break; // restart
+            }
+        }
+    }
+
+    // current is logically deleted, append marker so no node is inserted after it, then unlink
+    private void unlink(Node<K, V> predecessor, Node<K, V> current) {
+        Node<K, V> successor;
+        do {
+            successor = current.next.get();
+        } while ((successor == null || !successor.marker) && !current.casNext(successor, Node.ofMarker(successor)));
+        predecessor.casNext(current, current.next.get().next.get());
+        // unlink indices
+        findNode(current.key, false);
+        tryDecreaseLevel();
+    }
+
+    /**
+     * Help delete current.
+     *
+     * @param predecessor predecessor
+     * @param current     current
+     */
+    private void helpDelete(Node<K, V> predecessor, Node<K, V> current) {
+        Node<K, V> successor = current.next.get();
+        if (successor == null || !successor.marker) {
+            // step 1 -> 2, insert marker, logical remove
+            current.casNext(successor, Node.ofMarker(successor));
+        } else {
+            // step 2 -> 3, physical remove
+            predecessor.casNext(current, successor.next.get());
+        }
+    }
+
+    @Nonnull
+    private Node<K, V> findNode(K key, boolean onlyPredecessor) {
+        while (true) {
+            for (Index<K, V> predecessor = headIndex.get(), current = predecessor.right.get(), successor, down; ; ) {
+                if (current != null) {
+                    if (current.node.value.get() == null) {
+                        // current is deleted
+                        successor = current.right.get();
+                        if (!predecessor.casRight(current, successor)) {
+                            break; // restart
+                        }
+                        current = successor;
+                        continue;
+                    }
+                    int c = comparator.compare(current.node.key, key);
+                    if (c == 0) {
+                        // found
+                        return onlyPredecessor ? predecessor.node : current.node;
+                    }
+                    if (c < 0) {
+                        // current.node.key < key
+                        // go right
+                        predecessor = current;
+                        current = current.right.get();
+                        continue;
+                    }
+                }
+                // 1. current == null, no more index
+                // 2. current.key > key
+                // go down
+                down = predecessor.down;
+                if (down == null) {
+                    // the last index level
+                    return predecessor.node;
+                }
+                predecessor = down;
+                current = predecessor.right.get();
+            }
+        }
+    }
+
+    private void buildIndices(int level, Node<K, V> node) {
+        if (level < 1) {
+            // no index
+            return;
+        }
+
+        HeadIndex<K, V> head = headIndex.get();
+        if (level <= head.level) {
+            insertIndices(head, level, makeIndices(level, node));
+            return;
+        }
+        // grow at most one level
+        int newLevel = head.level + 1;
+        Index<K, V>[] indices = makeIndices(newLevel, node);
+        int insertLevel = increaseLevel(newLevel, indices);
+        insertIndices(headIndex.get(), insertLevel, indices);
+    }
+
+    private void insertIndices(HeadIndex<K, V> head, int level, Index<K, V>[] indices) {
+        final Node<K, V> node = indices[0].node;
+
+        Index<K, V> predecessor;
+        Index<K, V> current;
+        Index<K, V> successor;
+
+        restart:
+        while (true) {
+            if (node.value.get() == null) {
+                // node is deleted
+                return;
+            }
+            predecessor = head;
+            current = predecessor.right.get();
+
+            int currentLevel = head.level;
+            while (true) {
+                if (current != null) {
+                    if (current.node.value.get() == null) {
+                        // current is deleted
+                        successor = current.right.get();
+                        if (!predecessor.casRight(current, successor)) {
+                            continue restart;
+                        }
+                        current = successor;
+                        continue;
+                    }
+                    int c = comparator.compare(current.node.key, node.key);
+                    if (c < 0) {
+                        // go right
+                        predecessor = current;
+                        current = current.right.get();
+                        continue;
+                    }
+                    if (c == 0) {
+                        if (currentLevel > indices.length || current != indices[currentLevel - 1]) {
+                            // index of another node with same key, one of the nodes is deleted
+                            continue restart;
+                        }
+                        // own index, linked by head or before restart
+                        if (--currentLevel == 0) {
+                            return;
+                        }
+                        predecessor = predecessor.down;
+                        current = predecessor.right.get();
+                        continue;
+                    }
+                }
+                // 1. current == null
+                // 2. current.key > key
+                if (currentLevel <= level) {
+                    // insert index
+                    indices[currentLevel - 1].lazySetRight(current);
+                    if (!predecessor.casRight(current, indices[currentLevel - 1])) {
+                        continue restart;
+                    }
+                    // node maybe deleted at this point
+                }
+                // go down
+                if (--currentLevel == 0) {
+                    // indices inserted
+                    return;
+                }
+                predecessor = predecessor.down;
+                current = predecessor.right.get();
+            }
+        }
+    }
+
+    /**
+     * Add head indices up to level, new head indices link to indices.
+     *
+     * @return the highest level of indices not linked by head
+     */
+    private int increaseLevel(int level, Index<K, V>[] indices) {
+        HeadIndex<K, V> oldHead;
+        HeadIndex<K, V> newHead;
+        while ((oldHead = headIndex.get()).level < level) {
+            // build head indices at once
+            newHead = oldHead;
+            for (int i = oldHead.level + 1; i <= level; i++) {
+                newHead = new HeadIndex<>(oldHead.node, indices[i - 1], newHead, i);
+            }
+            if (headIndex.compareAndSet(oldHead, newHead)) {
+                return oldHead.level;
+            }
+        }
+        // increased by others
+        return level;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Index<K, V>[] makeIndices(int level, Node<K, V> node) {
+        assert level > 0;
+        Index<K, V>[] indices = (Index<K, V>[]) new Index[level];
+        Index<K, V> lastIndex = null;
+        for (int i = 0; i < level; i++) {
+            indices[i] = new Index<>(node, null, lastIndex);
+            lastIndex = indices[i];
+        }
+        return indices;
+    }
+
+    private int randomLevel() {
+        int r = (int) System.nanoTime();
+        // xor shift
+        r ^= r << 13;
+        r ^= r >>> 17;
+        r ^= r << 5;
+        if ((r & 0x80000001) != 0) {
+            return 0;
+        }
+        int level = 1;
+        while (((r >>>= 1) & 1) != 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private void tryDecreaseLevel() {
+        HeadIndex<K, V> t1 = headIndex.get();
+        if (t1.level <= 3) {
+            return;
+        }
+        HeadIndex<K, V> t2 = (HeadIndex<K, V>) t1.down;
+        HeadIndex<K, V> t3 = (HeadIndex<K, V>) t2.down;
+        if (t3.right.get() != null || t2.right.get() != null || t1.right.get() != null) {
+            return;
+        }
+        if (headIndex.compareAndSet(t1, t2)) {
+            // rollback if right of t1 appeared
+            if (t1.right.get() != null) {
+                headIndex.compareAndSet(t2, t1);
+            }
+        }
+    }
+
+    private static class Index<K, V> {
+        final Node<K, V> node;
+        final AtomicReference<Index<K, V>> right;
+        final Index<K, V> down;
+
+        Index(Node<K, V> node, Index<K, V> right, Index<K, V> down) {
+            this.node = node;
+            this.right = new AtomicReference<>(right);
+            this.down = down;
+        }
+
+        @SuppressWarnings("BooleanMethodIsAlwaysInverted")
+        boolean casRight(Index<K, V> expect, Index<K, V> update) {
+            return node.value.get() != null && right.compareAndSet(expect, update);
+        }
+
+        void lazySetRight(Index<K, V> right) {
+            this.right.lazySet(right);
+        }
+    }
+
+    private static final class HeadIndex<K, V> extends Index<K, V> {
+        final int level;
+
+        HeadIndex(Node<K, V> node, Index<K, V> right, Index<K, V> down, int level) {
+            super(node, right, down);
+            this.level = level;
+        }
+
+        @Override
+        boolean casRight(Index<K, V> expect, Index<K, V> update) {
+            // head node has no value but is never deleted
+            return right.compareAndSet(expect, update);
+        }
+    }
+
+    private static final class Node<K, V> {
+        final boolean marker;
+        final K key;
+        final AtomicReference<V> value;
+        final AtomicReference<Node<K, V>> next;
+
+        Node(boolean marker, K key, V value, Node<K, V> next) {
+            this.marker = marker;
+            this.key = key;
+            this.value = new AtomicReference<>(value);
+            this.next = new AtomicReference<>(next);
+        }
+
+        static <K, V> Node<K, V> ofMarker(Node<K, V> next) {
+            return new Node<>(true, null, null, next);
+        }
+
+        static <K, V> Node<K, V> ofNormal(K key, V value, Node<K, V> next) {
+            return new Node<>(false, key, value, next);
+        }
+
+        Node<K, V> nextNotMarker() {
+            Node<K, V> successor = next.get();
+            if (successor == null) {
+                return null;
+            }
+            if (successor.marker) {
+                return successor.next.get();
+            }
+            return successor;
+        }
+
+        boolean casValue(V expect, V update) {
+            return value.compareAndSet(expect, update);
+        }
+
+        boolean casNext(Node<K, V> expect, Node<K, V> update) {
+            return next.compareAndSet(expect, update);
+        }
+    }
+}
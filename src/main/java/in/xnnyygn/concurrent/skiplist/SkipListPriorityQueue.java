@@ -0,0 +1,215 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * Lock-free priority queue based on skip list, by Linden and Jonsson.
+ * <p>
+ * Deletion of a node is the mark on the base level reference of its predecessor, so deleted nodes form
+ * a prefix of the list. {@link #removeMin()} marks the first unmarked reference after the prefix
+ * and only unlinks the prefix from head in batch when it is longer than {@link #MAX_OFFSET}.
+ * Items with same priority are removed in insertion order.
+ */
+@SuppressWarnings("Duplicates")
+public class SkipListPriorityQueue<T> {
+
+    // deleted nodes kept before head is moved
+    private static final int MAX_OFFSET = 32;
+
+    private final Comparator<T> comparator;
+    private final LevelGenerator levelGenerator;
+    private final Node<T> head;
+    private final Node<T> tail;
+    // highest level of linked nodes, never decreases
+    private final AtomicInteger highestLevel = new AtomicInteger(0);
+
+    public SkipListPriorityQueue(Comparator<T> comparator) {
+        this(comparator, LevelGenerator.DEFAULT_PROBABILITY);
+    }
+
+    /**
+     * @param promotionProbability probability of node being promoted to next level
+     */
+    public SkipListPriorityQueue(Comparator<T> comparator, double promotionProbability) {
+        Preconditions.checkNotNull(comparator);
+        this.comparator = comparator;
+        levelGenerator = new LevelGenerator(promotionProbability);
+        int maxLevel = levelGenerator.maxLevel();
+        head = new Node<>(null, maxLevel);
+        tail = new Node<>(null, maxLevel);
+        for (int level = 0; level <= maxLevel; level++) {
+            head.next[level].set(tail, false);
+        }
+    }
+
+    public void add(T item) {
+        Preconditions.checkNotNull(item);
+
+        // grow at most one level
+        int topLevel = levelGenerator.nextLevel(Math.min(highestLevel.get() + 1, levelGenerator.maxLevel()));
+        raiseLevel(topLevel);
+        Node<T>[] predecessors = newNodes(highestLevel.get() + 1);
+        Node<T>[] successors = newNodes(predecessors.length);
+        Node<T> node = new Node<>(item, topLevel);
+        Node<T> deleted;
+        while (true) {
+            deleted = find(item, predecessors, successors);
+            node.next[0].set(successors[0], false);
+            if (predecessors[0].next[0].compareAndSet(successors[0], node, false, false)) {
+                break;
+            }
+        }
+        // upper levels are shortcuts only, give up once node or successor is deleted
+        for (int level = 1; level <= topLevel; level++) {
+            while (true) {
+                node.next[level].set(successors[level], false);
+                if (node.next[0].isMarked() || successors[level].next[0].isMarked() || successors[level] == deleted) {
+                    return;
+                }
+                if (predecessors[level].next[level].compareAndSet(successors[level], node, false, false)) {
+                    break;
+                }
+                deleted = find(item, predecessors, successors);
+            }
+        }
+    }
+
+    /**
+     * Find predecessors and successors of new item, after all items not greater than it.
+     * Deleted nodes are always skipped.
+     *
+     * @return last deleted node skipped on base level, or {@code null}
+     */
+    private Node<T> find(T item, Node<T>[] predecessors, Node<T>[] successors) {
+        Node<T> deleted = null;
+        Node<T> predecessor = head;
+        Node<T> current;
+        boolean[] markHolder = new boolean[1];
+        for (int level = predecessors.length - 1; level >= 0; level--) {
+            current = predecessor.next[level].get(markHolder);
+            // base level only, current is deleted
+            boolean currentDeleted = markHolder[0];
+            while (current != tail && (comparator.compare(current.item, item) <= 0
+                    // successor of current is deleted, so is current
+                    || current.next[0].isMarked()
+                    || (level == 0 && currentDeleted))) {
+                if (level == 0 && currentDeleted) {
+                    deleted = current;
+                }
+                predecessor = current;
+                current = predecessor.next[level].get(markHolder);
+                currentDeleted = markHolder[0];
+            }
+            predecessors[level] = predecessor;
+            successors[level] = current;
+        }
+        return deleted;
+    }
+
+    /**
+     * Remove the least item.
+     *
+     * @return least item, or {@code null} if queue is empty
+     */
+    public T removeMin() {
+        boolean[] markHolder = new boolean[1];
+        Node<T> observedHead = head.next[0].get(markHolder);
+        boolean observedMark = markHolder[0];
+        Node<T> predecessor = head;
+        Node<T> current;
+        int offset = 0;
+        while (true) {
+            current = predecessor.next[0].get(markHolder);
+            if (current == tail) {
+                return null;
+            }
+            if (markHolder[0]) {
+                // current is deleted
+                predecessor = current;
+                offset++;
+                continue;
+            }
+            // attemptMark succeeds when already marked
+            if (predecessor.next[0].compareAndSet(current, current, false, true)) {
+                break;
+            }
+            // current is deleted by others or new node is inserted
+        }
+        // unlink deleted prefix before current from head, current is kept as the last deleted node
+        if (offset >= MAX_OFFSET && head.next[0].compareAndSet(observedHead, current, observedMark, true)) {
+            restructure();
+        }
+        return current.item;
+    }
+
+    public boolean isEmpty() {
+        boolean[] markHolder = new boolean[1];
+        Node<T> node = head;
+        Node<T> current;
+        while ((current = node.next[0].get(markHolder)) != tail) {
+            if (!markHolder[0]) {
+                return false;
+            }
+            node = current;
+        }
+        return true;
+    }
+
+    /**
+     * Move upper levels of head after deleted nodes.
+     */
+    private void restructure() {
+        Node<T> predecessor = head;
+        Node<T> first;
+        Node<T> current;
+        int level = highestLevel.get();
+        while (level > 0) {
+            first = head.next[level].getReference();
+            if (!first.next[0].isMarked()) {
+                // first node is not deleted
+                level--;
+                continue;
+            }
+            current = predecessor.next[level].getReference();
+            while (current.next[0].isMarked()) {
+                predecessor = current;
+                current = predecessor.next[level].getReference();
+            }
+            if (head.next[level].compareAndSet(first, current, false, false)) {
+                level--;
+            }
+        }
+    }
+
+    private void raiseLevel(int level) {
+        int current;
+        while ((current = highestLevel.get()) < level && !highestLevel.compareAndSet(current, level)) {
+            // retry
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<T>[] newNodes(int length) {
+        return (Node<T>[]) new Node[length];
+    }
+
+    private static class Node<T> {
+        // null for head and tail
+        private final T item;
+        // mark on base level means successor is deleted
+        private final AtomicMarkableReference<Node<T>>[] next;
+
+        @SuppressWarnings("unchecked")
+        Node(T item, int topLevel) {
+            this.item = item;
+            next = (AtomicMarkableReference<Node<T>>[]) new AtomicMarkableReference[topLevel + 1];
+            for (int level = 0; level <= topLevel; level++) {
+                next[level] = new AtomicMarkableReference<>(null, false);
+            }
+        }
+    }
+}
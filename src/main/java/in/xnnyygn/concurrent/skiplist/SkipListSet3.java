@@ -3,11 +3,23 @@ package in.xnnyygn.concurrent.skiplist;
 import com.google.common.base.Preconditions;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 
 @SuppressWarnings("Duplicates")
-public class SkipListSet3<T> {
+public class SkipListSet3<T> implements Iterable<T> {
+
+    // max nodes walked from last insert position in batch
+    private static final int MAX_BATCH_WALK = 32;
 
     private final Comparator<T> comparator;
     private final AtomicReference<HeadIndex<T>> headIndex;
@@ -151,13 +163,9 @@ public class SkipListSet3<T> {
                 if (current != null) {
                     T value = current.item.get();
                     if (value == null) {
-                        // current is deleted
-                        successor = current.nextNotMarker();
-                        if (!predecessor.casNext(current, successor)) {
-                            break; // restart
-                        }
-                        current = successor;
-                        continue;
+                        // current is deleted, unlink only after marker is appended
+                        helpDelete(predecessor, current);
+                        break; // restart
                     }
                     int c = comparator.compare(value, item);
                     if (c == 0) {
@@ -188,6 +196,167 @@ public class SkipListSet3<T> {
         }
     }
 
+    /**
+     * Create a finger for searches near the previous one, one finger per thread.
+     */
+    public Finger<T> newFinger() {
+        return new Finger<>(this);
+    }
+
+    /**
+     * Same as {@link #contains(Object)}, but search starts from the path of the previous search by finger.
+     */
+    public boolean contains(T item, Finger<T> finger) {
+        Preconditions.checkNotNull(item);
+        checkFinger(finger);
+
+        Node<T> predecessor = findPredecessor(item, finger);
+        for (Node<T> node = predecessor.nextNotMarker(); node != null; node = node.nextNotMarker()) {
+            T value = node.item.get();
+            if (value == null) {
+                continue;
+            }
+            int c = comparator.compare(value, item);
+            if (c >= 0) {
+                return c == 0;
+            }
+            finger.node = node;
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #add(Object)}, but search starts from the path of the previous search by finger.
+     * Appending in ascending order costs O(1) besides building indices.
+     */
+    public T add(T item, Finger<T> finger) {
+        Preconditions.checkNotNull(item);
+        checkFinger(finger);
+
+        while (true) {
+            for (Node<T> predecessor = findPredecessor(item, finger),
+                 current = predecessor.nextNotMarker(); ; ) {
+
+                if (current != null) {
+                    T value = current.item.get();
+                    if (value == null) {
+                        // current is deleted, unlink only after marker is appended
+                        helpDelete(predecessor, current);
+                        break; // restart
+                    }
+                    int c = comparator.compare(value, item);
+                    if (c == 0) {
+                        finger.node = predecessor;
+                        if (value.equals(item) || current.casItem(value, item)) {
+                            return value;
+                        }
+                        break; // restart
+                    }
+                    if (c < 0) {
+                        // current.item < item
+                        predecessor = current;
+                        current = current.nextNotMarker();
+                        continue;
+                    }
+                }
+                // 1. no more node
+                // 2. current.item > item
+                // insert node
+                Node<T> newNode = Node.ofNormal(item, current);
+                if (predecessor.casNext(current, newNode)) {
+                    // predecessor of next item in ascending order
+                    finger.node = newNode;
+                    buildIndices(randomLevel(), newNode, finger);
+                    return null;
+                }
+                break; // restart
+            }
+        }
+    }
+
+    private void checkFinger(Finger<T> finger) {
+        Preconditions.checkNotNull(finger);
+        Preconditions.checkArgument(finger.set == this, "finger of another set");
+    }
+
+    /**
+     * Find predecessor on base level starting from finger.
+     * Climb the cached path until item is between the cached index and its right, then go down as usual.
+     */
+    @Nonnull
+    private Node<T> findPredecessor(T item, Finger<T> finger) {
+        // last node of previous search
+        Node<T> node = finger.node;
+        if (node != null && isBefore(node, item)) {
+            Node<T> next = node.nextNotMarker();
+            T value;
+            if (next == null || ((value = next.item.get()) != null && comparator.compare(value, item) >= 0)) {
+                return node;
+            }
+        }
+        Index<T> index;
+        Index<T> right;
+        T value;
+        for (int level = 1; level <= finger.levels; level++) {
+            index = finger.path[level - 1];
+            if (index instanceof HeadIndex || isBefore(index.node, item)) {
+                right = index.right.get();
+                if (right == null || (value = right.node.item.get()) == null || comparator.compare(value, item) >= 0) {
+                    return descend(item, index, level, finger);
+                }
+            }
+        }
+        HeadIndex<T> head = headIndex.get();
+        return descend(item, head, head.level, finger);
+    }
+
+    // node is not deleted and less than item
+    private boolean isBefore(Node<T> node, T item) {
+        T value = node.item.get();
+        return value != null && comparator.compare(value, item) < 0;
+    }
+
+    /**
+     * Go down from index at level, record predecessor of each level in finger.
+     */
+    @Nonnull
+    private Node<T> descend(T item, Index<T> start, int startLevel, Finger<T> finger) {
+        restart:
+        while (true) {
+            int level = startLevel;
+            for (Index<T> predecessor = start, current = predecessor.right.get(), successor; ; ) {
+                if (current != null) {
+                    T value = current.node.item.get();
+                    if (value == null) {
+                        // current is deleted
+                        successor = current.right.get();
+                        if (!predecessor.casRight(current, successor)) {
+                            HeadIndex<T> head = headIndex.get();
+                            start = head;
+                            startLevel = head.level;
+                            continue restart;
+                        }
+                        current = successor;
+                        continue;
+                    }
+                    if (comparator.compare(value, item) < 0) {
+                        predecessor = current;
+                        current = current.right.get();
+                        continue;
+                    }
+                }
+                finger.record(level, predecessor);
+                if (predecessor.down == null) {
+                    finger.node = predecessor.node;
+                    return predecessor.node;
+                }
+                predecessor = predecessor.down;
+                level--;
+                current = predecessor.right.get();
+            }
+        }
+    }
+
     public T add2(T item) {
         Preconditions.checkNotNull(item);
 
@@ -233,6 +402,208 @@ public class SkipListSet3<T> {
         }
     }
 
+    /**
+     * Load sorted items into an empty set, building base nodes and indices bottom-up in one pass.
+     * Items equal to the previous one are skipped.
+     * Must not run concurrently with other writers.
+     *
+     * @return number of items loaded
+     * @throws IllegalStateException    if set is not empty
+     * @throws IllegalArgumentException if items are not sorted
+     */
+    public int bulkLoad(Iterator<T> sorted) {
+        Preconditions.checkNotNull(sorted);
+        HeadIndex<T> oldHead = headIndex.get();
+        Preconditions.checkState(first() == null, "set is not empty");
+
+        Node<T> headNode = Node.ofNormal(null, null);
+        Node<T> lastNode = headNode;
+        // first and last index of each level, level 1 at 0
+        List<Index<T>> firstIndices = new ArrayList<>();
+        List<Index<T>> lastIndices = new ArrayList<>();
+        T lastItem = null;
+        int count = 0;
+        while (sorted.hasNext()) {
+            T item = sorted.next();
+            Preconditions.checkNotNull(item);
+            if (lastItem != null) {
+                int c = comparator.compare(lastItem, item);
+                Preconditions.checkArgument(c <= 0, "items are not sorted");
+                if (c == 0) {
+                    continue;
+                }
+            }
+            Node<T> node = Node.ofNormal(item, null);
+            // nothing is published until head index is set
+            lastNode.next.lazySet(node);
+            lastNode = node;
+            lastItem = item;
+            count++;
+            // same distribution as randomLevel, every fourth node has index, halved per level
+            int level = (count & 3) == 0 ? Integer.numberOfTrailingZeros(count) - 1 : 0;
+            Index<T> down = null;
+            for (int i = 0; i < level; i++) {
+                Index<T> index = new Index<>(node, null, down);
+                if (i < lastIndices.size()) {
+                    lastIndices.get(i).lazySetRight(index);
+                    lastIndices.set(i, index);
+                } else {
+                    firstIndices.add(index);
+                    lastIndices.add(index);
+                }
+                down = index;
+            }
+        }
+        HeadIndex<T> newHead = new HeadIndex<>(headNode, firstIndices.isEmpty() ? null : firstIndices.get(0), null, 1);
+        for (int i = 1; i < firstIndices.size(); i++) {
+            newHead = new HeadIndex<>(headNode, firstIndices.get(i), newHead, i + 1);
+        }
+        if (!headIndex.compareAndSet(oldHead, newHead)) {
+            throw new IllegalStateException("concurrent modification");
+        }
+        return count;
+    }
+
+    /**
+     * Add a batch of items sorted in ascending order.
+     * Consecutive items are spliced from the last insert position instead of descending from head,
+     * fall back to a full search on conflict or when the next position is far away.
+     *
+     * @return number of items added
+     * @throws IllegalArgumentException if batch is not sorted
+     */
+    public int addAll(Iterable<T> sortedBatch) {
+        Preconditions.checkNotNull(sortedBatch);
+
+        int added = 0;
+        T lastItem = null;
+        Node<T> predecessor = null;
+        for (T item : sortedBatch) {
+            Preconditions.checkNotNull(item);
+            if (lastItem != null) {
+                int c = comparator.compare(lastItem, item);
+                Preconditions.checkArgument(c <= 0, "batch is not sorted");
+                if (c == 0) {
+                    // predecessor holds the same item
+                    continue;
+                }
+            }
+            lastItem = item;
+
+            restart:
+            while (true) {
+                // steps left before searching from head again
+                int steps = Integer.MAX_VALUE;
+                if (predecessor == null) {
+                    predecessor = findNode(item, true);
+                } else {
+                    steps = MAX_BATCH_WALK;
+                }
+                for (Node<T> current = predecessor.nextNotMarker(), newNode; ; ) {
+                    if (current != null) {
+                        T value = current.item.get();
+                        if (value == null) {
+                            // current is deleted, unlink only after marker is appended
+                            helpDelete(predecessor, current);
+                            predecessor = null;
+                            continue restart;
+                        }
+                        int c = comparator.compare(value, item);
+                        if (c == 0) {
+                            if (value.equals(item) || current.casItem(value, item)) {
+                                predecessor = current;
+                                break restart;
+                            }
+                            predecessor = null;
+                            continue restart;
+                        }
+                        if (c < 0) {
+                            // current.item < item
+                            if (--steps == 0) {
+                                predecessor = null;
+                                continue restart;
+                            }
+                            predecessor = current;
+                            current = current.nextNotMarker();
+                            continue;
+                        }
+                    }
+                    // 1. no more node
+                    // 2. current.item > item
+                    newNode = Node.ofNormal(item, current);
+                    if (predecessor.casNext(current, newNode)) {
+                        buildIndices(randomLevel(), newNode);
+                        added++;
+                        // next item is not less than this one
+                        predecessor = newNode;
+                        break restart;
+                    }
+                    predecessor = null;
+                    continue restart;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Add a batch of items in any order.
+     * Batch is sorted and split into key ranges, each range is added by {@link #addAll(Iterable)} in common pool.
+     *
+     * @return number of items added
+     */
+    @SuppressWarnings("unchecked")
+    public int addAllParallel(Collection<T> batch) {
+        Preconditions.checkNotNull(batch);
+        T[] items = (T[]) batch.toArray();
+        Arrays.parallelSort(items, comparator);
+        return ForkJoinPool.commonPool().invoke(new AddRangeTask(items, 0, items.length));
+    }
+
+    /**
+     * Link indices after predecessors in finger, fall back to search from head if any of them is not valid.
+     */
+    private void buildIndices(int level, Node<T> node, Finger<T> finger) {
+        if (level < 1) {
+            return;
+        }
+        HeadIndex<T> head = headIndex.get();
+        if (level > head.level) {
+            buildIndices(level, node);
+            return;
+        }
+        T item = node.item.get();
+        if (item == null) {
+            // node is deleted
+            return;
+        }
+        Index<T>[] indices = makeIndices(level, node);
+        Index<T> predecessor;
+        Index<T> right;
+        T value;
+        int linked = 0;
+        for (; linked < level && linked < finger.levels; linked++) {
+            predecessor = finger.path[linked];
+            if (!(predecessor instanceof HeadIndex) && !isBefore(predecessor.node, item)) {
+                break;
+            }
+            right = predecessor.right.get();
+            if (right != null && ((value = right.node.item.get()) == null || comparator.compare(value, item) <= 0)) {
+                break;
+            }
+            indices[linked].lazySetRight(right);
+            if (!predecessor.casRight(right, indices[linked])) {
+                break;
+            }
+            // predecessor of next item in ascending order
+            finger.path[linked] = indices[linked];
+        }
+        if (linked < level) {
+            // upper indices, lower ones linked are skipped
+            insertIndices(headIndex.get(), level, indices);
+        }
+    }
+
     private void buildIndices(int level, Node<T> node) {
         if (level < 1) {
             // no index
@@ -240,21 +611,23 @@ public class SkipListSet3<T> {
         }
 
         HeadIndex<T> head = headIndex.get();
-        int newLevel;
-        Index<T>[] indices;
-        if (level > head.level) {
-            newLevel = level;
-            indices = makeIndices(newLevel, node);
-        } else {
-            newLevel = head.level + 1;
-            indices = makeIndices(newLevel, node);
-            head = increaseLevel(newLevel, head, node, indices);
+        if (level <= head.level) {
+            insertIndices(head, level, makeIndices(level, node));
+            return;
         }
-        insertIndices(head, newLevel, indices);
+        // grow at most one level
+        int newLevel = head.level + 1;
+        Index<T>[] indices = makeIndices(newLevel, node);
+        int insertLevel = increaseLevel(newLevel, indices);
+        insertIndices(headIndex.get(), insertLevel, indices);
     }
 
     private void insertIndices(HeadIndex<T> head, int level, Index<T>[] indices) {
         final T item = indices[0].node.item.get();
+        if (item == null) {
+            // node is deleted
+            return;
+        }
 
         Index<T> predecessor;
         Index<T> current;
@@ -262,11 +635,15 @@ public class SkipListSet3<T> {
 
         restart:
         while (true) {
+            if (indices[0].node.item.get() == null) {
+                // node is deleted
+                return;
+            }
             predecessor = head;
             current = predecessor.right.get();
 
             int currentLevel = head.level;
-            while (currentLevel > 0) {
+            while (true) {
                 if (current != null) {
                     T value = current.node.item.get();
                     if (value == null) {
@@ -279,15 +656,25 @@ public class SkipListSet3<T> {
                         continue;
                     }
                     int c = comparator.compare(value, item);
-                    if (c == 0) { // impossible
-                        throw new IllegalStateException("encounter index with same item when insert index");
-                    }
                     if (c < 0) {
                         // go right
                         predecessor = current;
                         current = current.right.get();
                         continue;
                     }
+                    if (c == 0) {
+                        if (currentLevel > indices.length || current != indices[currentLevel - 1]) {
+                            // index of another node with same item, one of the nodes is deleted
+                            continue restart;
+                        }
+                        // own index, linked by head or before restart
+                        if (--currentLevel == 0) {
+                            return;
+                        }
+                        predecessor = predecessor.down;
+                        current = predecessor.right.get();
+                        continue;
+                    }
                 }
                 // 1. current == null
                 // 2. current.item > item
@@ -303,36 +690,39 @@ public class SkipListSet3<T> {
                 // 1. index inserted
                 // 2. current level > level
                 // go down
+                if (--currentLevel == 0) {
+                    // indices inserted
+                    return;
+                }
                 predecessor = predecessor.down;
                 current = predecessor.right.get();
-                currentLevel--;
             }
-
-            // indices inserted
-            return;
         }
     }
 
-    private HeadIndex<T> increaseLevel(int expectLevel, HeadIndex<T> head, Node<T> node, Index<T>[] indices) {
-        HeadIndex<T> oldHead = head;
+    /**
+     * Add head indices up to level, new head indices link to indices.
+     *
+     * @return the highest level of indices not linked by head
+     */
+    private int increaseLevel(int level, Index<T>[] indices) {
+        HeadIndex<T> oldHead;
         HeadIndex<T> newHead;
-
-        while (oldHead.level < expectLevel) {
+        while ((oldHead = headIndex.get()).level < level) {
             // build head indices at once
             newHead = oldHead;
-            for (int level = oldHead.level + 1; level <= expectLevel; level++) {
-                newHead = new HeadIndex<>(node, indices[level - 1], newHead, level);
+            for (int i = oldHead.level + 1; i <= level; i++) {
+                newHead = new HeadIndex<>(oldHead.node, indices[i - 1], newHead, i);
             }
-            // newHead = new HeadIndex<>(node, indices[oldHead.level], oldHead, oldHead.level + 1);
             if (headIndex.compareAndSet(oldHead, newHead)) {
-                return newHead;
+                return oldHead.level;
             }
-            oldHead = headIndex.get();
         }
-        return oldHead;
+        // increased by others
+        return level;
     }
 
-    @SuppressWarnings("unchecked")
+    @SuppressWarnings({"unchecked", "rawtypes"})
     private Index<T>[] makeIndices(int level, Node<T> node) {
         assert level > 0;
         Index<T>[] indices = (Index<T>[]) new Index[level];
@@ -365,20 +755,16 @@ public class SkipListSet3<T> {
 
         while (true) {
             for (Node<T> predecessor = findNode(item, true),
-                 current = predecessor.nextNotMarker(), successor; ; ) {
+                 current = predecessor.nextNotMarker(); ; ) {
                 if (current == null) {
                     // not found
                     return null;
                 }
                 T value = current.item.get();
                 if (value == null) {
-                    // current is deleted
-                    successor = current.nextNotMarker();
-                    if (!predecessor.casNext(current, successor)) {
-                        break; // restart
-                    }
-                    current = successor;
-                    continue;
+                    // current is deleted, unlink only after marker is appended
+                    helpDelete(predecessor, current);
+                    break; // restart
                 }
                 int c = comparator.compare(value, item);
                 if (c > 0) {
@@ -397,18 +783,7 @@ public class SkipListSet3<T> {
                 if (!current.casItem(value, null)) {
                     break; // restart
                 }
-                successor = current.next.get();
-                if (successor == null || !successor.marker) {
-                    Node<T> marker = Node.ofMarker(successor);
-                    current.casNext(successor, marker);
-                    // if failed, a marker node is inserted
-                    predecessor.casNext(current, successor);
-                } else {
-                    predecessor.casNext(current, successor.next.get());
-                }
-                // unlink indices
-                findNode(item, false);
-                tryDecreaseLevel();
+                unlink(predecessor, current, value);
                 return value;
             }
         }
@@ -420,7 +795,7 @@ public class SkipListSet3<T> {
         restart:
         while (true) {
             for (Node<T> predecessor = findNode(item, true),
-                 current = predecessor.next.get(), successor; current != null; ) {
+                 current = predecessor.next.get(); current != null; ) {
                 if (current.marker) {
                     // predecessor is deleted
                     continue restart;
@@ -449,18 +824,7 @@ public class SkipListSet3<T> {
                 if (!current.casItem(value, null)) {
                     continue restart;
                 }
-                successor = current.next.get();
-                if (successor == null || !successor.marker) {
-                    Node<T> marker = Node.ofMarker(successor);
-                    current.casNext(successor, marker);
-                    // if failed, a marker node is inserted
-                    predecessor.casNext(current, successor);
-                } else {
-                    predecessor.casNext(current, successor.next.get());
-                }
-                // unlink indices
-                findNode(item, false);
-                tryDecreaseLevel();
+                unlink(predecessor, current, value);
                 return value;
             }
             // not found
@@ -468,6 +832,221 @@ public class SkipListSet3<T> {
         }
     }
 
+    /**
+     * Unlink node removed by current thread.
+     *
+     * @param predecessor predecessor, may be deleted
+     * @param current     node removed, item is set to {@code null}
+     * @param item        removed item
+     */
+    private void unlink(Node<T> predecessor, Node<T> current, T item) {
+        Node<T> successor;
+        // append marker so no node is inserted after current, then unlink
+        do {
+            successor = current.next.get();
+        } while ((successor == null || !successor.marker) && !current.casNext(successor, Node.ofMarker(successor)));
+        predecessor.casNext(current, current.next.get().next.get());
+        // unlink indices
+        findNode(item, false);
+        tryDecreaseLevel();
+    }
+
+    /**
+     * Remove the least item.
+     *
+     * @return least item, or {@code null} if set is empty
+     */
+    public T pollFirst() {
+        return claimAfter(headIndex.get().node, 0);
+    }
+
+    /**
+     * Remove one of the least items, chosen by a random walk from head, SprayList by Alistarh et al.
+     * Walk starts at index level {@code height}, skips at most {@code maxJump} items on each level
+     * and goes down one level each time.
+     *
+     * @return removed item, or {@code null} if set is empty
+     */
+    T spray(int height, int maxJump) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HeadIndex<T> head = headIndex.get();
+        if (height < 1) {
+            return claimAfterOrFirst(head.node, random.nextInt(maxJump + 1));
+        }
+        Index<T> index = head;
+        for (int level = head.level; level > height; level--) {
+            index = index.down;
+        }
+        Index<T> right;
+        while (true) {
+            for (int jump = random.nextInt(maxJump + 1); jump > 0 && (right = index.right.get()) != null; ) {
+                index = right;
+                if (right.node.item.get() != null) {
+                    jump--;
+                }
+            }
+            if (index.down == null) {
+                break;
+            }
+            index = index.down;
+        }
+        // node of index may be deleted meanwhile, items after it are still greater
+        return claimAfterOrFirst(index.node, random.nextInt(maxJump + 1));
+    }
+
+    private T claimAfterOrFirst(Node<T> start, int skip) {
+        T item = claimAfter(start, skip);
+        // walked past the last item
+        return item != null ? item : pollFirst();
+    }
+
+    /**
+     * Remove the first item after start, skipping {@code skip} items.
+     *
+     * @return removed item, or {@code null} if no more items
+     */
+    private T claimAfter(Node<T> start, int skip) {
+        for (Node<T> predecessor = start, current = start.next.get(); current != null; current = current.next.get()) {
+            if (current.marker) {
+                continue;
+            }
+            T value = current.item.get();
+            if (value != null) {
+                if (skip > 0) {
+                    skip--;
+                } else if (current.casItem(value, null)) {
+                    unlink(predecessor, current, value);
+                    return value;
+                }
+            }
+            predecessor = current;
+        }
+        return null;
+    }
+
+    // navigation, walk base level once from the predecessor found by indices,
+    // deleted nodes and markers have no item and are skipped without helping
+
+    /**
+     * Least item greater than or equal to item, or {@code null}.
+     */
+    public T ceiling(T item) {
+        Preconditions.checkNotNull(item);
+        return firstAfter(item, true);
+    }
+
+    /**
+     * Least item strictly greater than item, or {@code null}.
+     */
+    public T higher(T item) {
+        Preconditions.checkNotNull(item);
+        return firstAfter(item, false);
+    }
+
+    /**
+     * Greatest item less than or equal to item, or {@code null}.
+     */
+    public T floor(T item) {
+        Preconditions.checkNotNull(item);
+        return lastBefore(item, true);
+    }
+
+    /**
+     * Greatest item strictly less than item, or {@code null}.
+     */
+    public T lower(T item) {
+        Preconditions.checkNotNull(item);
+        return lastBefore(item, false);
+    }
+
+    public T first() {
+        for (Node<T> node = headIndex.get().node.next.get(); node != null; node = node.next.get()) {
+            T value = node.item.get();
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public T last() {
+        while (true) {
+            // go right as far as possible, then down
+            Index<T> index = headIndex.get();
+            Index<T> right;
+            while (true) {
+                right = index.right.get();
+                if (right != null && right.node.item.get() != null) {
+                    index = right;
+                } else if (index.down != null) {
+                    index = index.down;
+                } else {
+                    break;
+                }
+            }
+            T result = null;
+            for (Node<T> node = index.node; node != null; node = node.next.get()) {
+                T value = node.item.get();
+                if (value != null) {
+                    result = value;
+                }
+            }
+            // start node and all nodes after it may be deleted meanwhile
+            if (result != null || index instanceof HeadIndex) {
+                return result;
+            }
+        }
+    }
+
+    private T firstAfter(T item, boolean inclusive) {
+        for (Node<T> node = findNode(item, true).next.get(); node != null; node = node.next.get()) {
+            T value = node.item.get();
+            if (value == null) {
+                continue;
+            }
+            int c = comparator.compare(value, item);
+            if (c > 0 || (c == 0 && inclusive)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private T lastBefore(T item, boolean inclusive) {
+        T result = null;
+        // predecessor is less than item or head
+        for (Node<T> node = findNode(item, true); node != null; node = node.next.get()) {
+            T value = node.item.get();
+            if (value == null) {
+                continue;
+            }
+            int c = comparator.compare(value, item);
+            if (c > 0 || (c == 0 && !inclusive)) {
+                break;
+            }
+            result = value;
+        }
+        return result;
+    }
+
+    /**
+     * Weakly consistent iterator in ascending order.
+     */
+    @Override
+    @Nonnull
+    public Iterator<T> iterator() {
+        return new Itr(headIndex.get().node, null, null);
+    }
+
+    /**
+     * Weakly consistent view of items from {@code from} inclusive to {@code to} exclusive.
+     */
+    public Iterable<T> subSet(T from, T to) {
+        Preconditions.checkNotNull(from);
+        Preconditions.checkNotNull(to);
+        return () -> new Itr(findNode(from, true), from, to);
+    }
+
     private void tryDecreaseLevel() {
         HeadIndex<T> t1 = headIndex.get();
         if (t1.level <= 3) {
@@ -486,6 +1065,113 @@ public class SkipListSet3<T> {
         }
     }
 
+    /**
+     * Search path cached by one thread, not thread safe.
+     */
+    public static final class Finger<T> {
+        private final SkipListSet3<T> set;
+        // predecessor index of level i at i - 1
+        private Index<T>[] path;
+        private int levels = 0;
+        // predecessor on base level
+        private Node<T> node;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Finger(SkipListSet3<T> set) {
+            this.set = set;
+            path = (Index<T>[]) new Index[4];
+        }
+
+        private void record(int level, Index<T> index) {
+            if (level > path.length) {
+                path = Arrays.copyOf(path, Math.max(level, path.length * 2));
+            }
+            path[level - 1] = index;
+            levels = Math.max(levels, level);
+        }
+    }
+
+    private class AddRangeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 4096;
+        private final T[] items;
+        private final int from;
+        private final int to;
+
+        AddRangeTask(T[] items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= THRESHOLD) {
+                return addAll(Arrays.asList(items).subList(from, to));
+            }
+            int middle = (from + to) >>> 1;
+            AddRangeTask left = new AddRangeTask(items, from, middle);
+            left.fork();
+            int right = new AddRangeTask(items, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    private class Itr implements Iterator<T> {
+        // exclusive, null if no bound
+        private final T to;
+        private Node<T> nextNode;
+        private T nextItem;
+        private T lastReturned;
+
+        Itr(Node<T> start, T from, T to) {
+            this.to = to;
+            advance(start, from);
+        }
+
+        // move to the first item after node and not less than from
+        private void advance(Node<T> node, T from) {
+            for (node = node.next.get(); node != null; node = node.next.get()) {
+                T value = node.item.get();
+                if (value == null || (from != null && comparator.compare(value, from) < 0)) {
+                    continue;
+                }
+                if (to != null && comparator.compare(value, to) >= 0) {
+                    break;
+                }
+                nextNode = node;
+                nextItem = value;
+                return;
+            }
+            nextNode = null;
+            nextItem = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public T next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = nextItem;
+            advance(nextNode, null);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            SkipListSet3.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
     private static class Index<T> {
         final Node<T> node;
         final AtomicReference<Index<T>> right;
@@ -514,6 +1200,12 @@ public class SkipListSet3<T> {
             super(node, right, down);
             this.level = level;
         }
+
+        @Override
+        boolean casRight(Index<T> expect, Index<T> update) {
+            // head node has no item but is never deleted
+            return right.compareAndSet(expect, update);
+        }
     }
 
     private static final class Node<T> {
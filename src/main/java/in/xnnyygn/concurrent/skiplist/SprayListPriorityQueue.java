@@ -0,0 +1,86 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Relaxed priority queue on {@link SkipListSet3}, SprayList by Alistarh et al.
+ * <p>
+ * {@link #removeMin()} removes one of the first O(p log^3 p) items by a random walk on index levels,
+ * where p is the parallelism, so concurrent consumers spread over different nodes instead of
+ * contending on the first one. With parallelism 1 the least item is always removed.
+ */
+public class SprayListPriorityQueue<T> {
+
+    private final SkipListSet3<Entry<T>> set;
+    private final int height;
+    private final int maxJump;
+
+    public SprayListPriorityQueue(Comparator<T> comparator) {
+        this(comparator, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism expected number of concurrent consumers
+     */
+    public SprayListPriorityQueue(Comparator<T> comparator, int parallelism) {
+        Preconditions.checkNotNull(comparator);
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        set = new SkipListSet3<>((e1, e2) -> {
+            int c = comparator.compare(e1.item, e2.item);
+            return c != 0 ? c : Long.compare(e1.tieBreaker, e2.tieBreaker);
+        });
+        // floor(log2(parallelism))
+        int log = 31 - Integer.numberOfLeadingZeros(parallelism);
+        height = log;
+        maxJump = log;
+    }
+
+    public void add(T item) {
+        Preconditions.checkNotNull(item);
+        // items with same priority are kept, random tie breaker avoids a shared counter
+        Entry<T> entry = new Entry<>(item, ThreadLocalRandom.current().nextLong());
+        while ((entry = set.add(entry)) != null) {
+            // tie breaker collided, entry added before is replaced, add it again
+            entry = new Entry<>(entry.item, ThreadLocalRandom.current().nextLong());
+        }
+    }
+
+    /**
+     * Remove one of the least items.
+     *
+     * @return removed item, or {@code null} if queue is empty
+     */
+    public T removeMin() {
+        // a spray from a fixed level rarely hits the first items, which would then stay for long,
+        // start level is random so lower levels cover the front
+        Entry<T> entry = set.spray(ThreadLocalRandom.current().nextInt(height + 1), maxJump);
+        return entry != null ? entry.item : null;
+    }
+
+    /**
+     * Remove the least item.
+     *
+     * @return least item, or {@code null} if queue is empty
+     */
+    public T removeMinExact() {
+        Entry<T> entry = set.pollFirst();
+        return entry != null ? entry.item : null;
+    }
+
+    public boolean isEmpty() {
+        return set.first() == null;
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final long tieBreaker;
+
+        Entry(T item, long tieBreaker) {
+            this.item = item;
+            this.tieBreaker = tieBreaker;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package in.xnnyygn.robinhash;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// robin hood hash with optimistic reads
+// table is split into segments, each segment has a stamp working like a seqlock.
+// writers lock the segments of their probe range by making the stamp odd,
+// readers take no lock, they validate the stamps of visited segments and retry if any changed.
+public class ConcurrentRobinHoodHash<K, V> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int DEFAULT_SEGMENT_SIZE = 64;
+    // one stamp per cache line
+    private static final int STAMP_STRIDE = 8;
+
+    @SuppressWarnings("rawtypes")
+    private static final Entry RETRY = new Entry<>(null, null, 0);
+    @SuppressWarnings("rawtypes")
+    private static final Entry RESIZE = new Entry<>(null, null, 0);
+
+    private final float loadFactor;
+    private final int segmentSize;
+    private final LongAdder count = new LongAdder();
+    private volatile Table<K, V> table;
+
+    public ConcurrentRobinHoodHash(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Create hash.
+     *
+     * @param capacity    initial capacity
+     * @param loadFactor  load factor in (0, 1]
+     * @param segmentSize slots per segment, one stamp per segment
+     */
+    public ConcurrentRobinHoodHash(int capacity, float loadFactor, int segmentSize) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity <= 0 or capacity > " + MAX_CAPACITY);
+        }
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("load factor not in (0, 1]");
+        }
+        if (segmentSize <= 0 || segmentSize > MAX_CAPACITY) {
+            throw new IllegalArgumentException("segment size <= 0 or segment size > " + MAX_CAPACITY);
+        }
+        this.loadFactor = loadFactor;
+        this.segmentSize = RobinHoodHash.tableSizeFor(segmentSize);
+        this.table = new Table<>(RobinHoodHash.tableSizeFor(capacity), this.segmentSize, loadFactor);
+    }
+
+    public boolean contains(@Nonnull K key) {
+        return find(key) != null;
+    }
+
+    public V get(@Nonnull K key) {
+        Entry<K, V> entry = find(key);
+        return entry != null ? entry.value : null;
+    }
+
+    private Entry<K, V> find(@Nonnull K key) {
+        int h = RobinHoodHash.hash(key);
+        Entry<K, V> entry;
+        do {
+            entry = table.find(key, h);
+        } while (entry == RETRY);
+        return entry;
+    }
+
+    /**
+     * Add or replace.
+     *
+     * @return true if key is new, otherwise false
+     */
+    public boolean add(@Nonnull K key, V value) {
+        return update(new Entry<>(key, value, RobinHoodHash.hash(key))) == null;
+    }
+
+    /**
+     * Put key and value.
+     *
+     * @return previous value, or null if key is new
+     */
+    public V put(@Nonnull K key, V value) {
+        Entry<K, V> replaced = update(new Entry<>(key, value, RobinHoodHash.hash(key)));
+        return replaced != null ? replaced.value : null;
+    }
+
+    // return replaced entry, or null if key is new
+    private Entry<K, V> update(@Nonnull Entry<K, V> newEntry) {
+        while (true) {
+            Table<K, V> t = table;
+            Entry<K, V> replaced = tryUpdate(t, newEntry);
+            if (replaced == RESIZE) {
+                resize(t);
+            } else if (replaced != RETRY) {
+                return replaced;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> tryUpdate(@Nonnull Table<K, V> t, @Nonnull Entry<K, V> newEntry) {
+        int index = newEntry.hash & t.mask;
+        LockedRange<K, V> range = lockHome(t, index);
+        if (range == null) {
+            return RETRY;
+        }
+        try {
+            int d = 0;
+            Entry<K, V> entry;
+            while (true) {
+                if (!range.cover(index)) {
+                    return RETRY;
+                }
+                entry = t.entries.get(index);
+                if (entry == null || t.displacement(entry, index) < d) {
+                    break;
+                }
+                if (entry.hash == newEntry.hash && entry.key.equals(newEntry.key)) {
+                    t.entries.set(index, newEntry);
+                    return entry;
+                }
+                index = (index + 1) & t.mask;
+                d++;
+            }
+            if (count.sum() >= t.threshold) {
+                if (t.capacity() < MAX_CAPACITY) {
+                    return RESIZE;
+                }
+                if (count.sum() >= MAX_CAPACITY) {
+                    throw new IllegalStateException("table is full");
+                }
+            }
+            // entries from here to the first empty slot may move, lock them before any change
+            for (int i = index; entry != null; ) {
+                i = (i + 1) & t.mask;
+                if (i == index) {
+                    // concurrent inserts passed the threshold check and filled the table
+                    if (t.capacity() < MAX_CAPACITY) {
+                        return RESIZE;
+                    }
+                    throw new IllegalStateException("table is full");
+                }
+                if (!range.cover(i)) {
+                    return RETRY;
+                }
+                entry = t.entries.get(i);
+            }
+            Entry<K, V> carried = newEntry;
+            while ((entry = t.entries.get(index)) != null) {
+                int entryDistance = t.displacement(entry, index);
+                if (entryDistance < d) {
+                    t.entries.set(index, carried);
+                    carried = entry;
+                    d = entryDistance;
+                }
+                index = (index + 1) & t.mask;
+                d++;
+            }
+            t.entries.set(index, carried);
+            count.increment();
+            return null;
+        } finally {
+            range.unlock();
+        }
+    }
+
+    public boolean remove(@Nonnull K key) {
+        int h = RobinHoodHash.hash(key);
+        Entry<K, V> removed;
+        do {
+            removed = tryRemove(table, key, h);
+        } while (removed == RETRY);
+        return removed != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> tryRemove(@Nonnull Table<K, V> t, @Nonnull K key, int h) {
+        int index = h & t.mask;
+        LockedRange<K, V> range = lockHome(t, index);
+        if (range == null) {
+            return RETRY;
+        }
+        try {
+            Entry<K, V> removed;
+            for (int d = 0; ; d++) {
+                if (!range.cover(index)) {
+                    return RETRY;
+                }
+                removed = t.entries.get(index);
+                if (removed == null || t.displacement(removed, index) < d) {
+                    return null;
+                }
+                if (removed.hash == h && removed.key.equals(key)) {
+                    break;
+                }
+                index = (index + 1) & t.mask;
+            }
+            // lock entries to shift back, until an empty slot or an entry at its home
+            int end = index;
+            Entry<K, V> entry;
+            do {
+                end = (end + 1) & t.mask;
+                if (!range.cover(end)) {
+                    return RETRY;
+                }
+                entry = t.entries.get(end);
+            } while (entry != null && t.displacement(entry, end) > 0);
+            for (int next = (index + 1) & t.mask; next != end; next = (next + 1) & t.mask) {
+                t.entries.set(index, t.entries.get(next));
+                index = next;
+            }
+            t.entries.set(index, null);
+            count.decrement();
+            return removed;
+        } finally {
+            range.unlock();
+        }
+    }
+
+    // spin until the segment of home index is locked, return null if table is replaced
+    private LockedRange<K, V> lockHome(@Nonnull Table<K, V> t, int index) {
+        int segment = t.segmentOf(index);
+        while (!t.tryLock(segment)) {
+            if (table != t) {
+                return null;
+            }
+            Thread.yield();
+        }
+        return new LockedRange<>(t, segment);
+    }
+
+    private void resize(@Nonnull Table<K, V> t) {
+        // lock all segments in order, writers never wait for a segment while holding another
+        int segmentCount = t.segmentMask + 1;
+        for (int segment = 0; segment < segmentCount; ) {
+            if (t.tryLock(segment)) {
+                segment++;
+            } else if (table != t) {
+                // resized by another thread
+                for (int i = 0; i < segment; i++) {
+                    t.unlock(i);
+                }
+                return;
+            } else {
+                Thread.yield();
+            }
+        }
+        Table<K, V> newTable = new Table<>(t.capacity() << 1, segmentSize, loadFactor);
+        for (int i = 0; i < t.capacity(); i++) {
+            Entry<K, V> entry = t.entries.get(i);
+            if (entry != null) {
+                newTable.place(entry);
+            }
+        }
+        // old table stays locked, threads on it will retry with the new table
+        table = newTable;
+    }
+
+    public int size() {
+        return count.intValue();
+    }
+
+    int capacity() {
+        return table.capacity();
+    }
+
+    private static class Table<K, V> {
+        final AtomicReferenceArray<Entry<K, V>> entries;
+        final AtomicLongArray stamps;
+        final int mask;
+        final int segmentShift;
+        final int segmentMask;
+        final int threshold;
+
+        Table(int capacity, int segmentSize, float loadFactor) {
+            entries = new AtomicReferenceArray<>(capacity);
+            int slots = Math.min(segmentSize, capacity);
+            int segmentCount = capacity / slots;
+            stamps = new AtomicLongArray(segmentCount * STAMP_STRIDE);
+            mask = capacity - 1;
+            segmentShift = Integer.numberOfTrailingZeros(slots);
+            segmentMask = segmentCount - 1;
+            threshold = (capacity == MAX_CAPACITY) ? capacity : (int) (capacity * loadFactor);
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int segmentOf(int index) {
+            return index >>> segmentShift;
+        }
+
+        long stamp(int segment) {
+            return stamps.get(segment * STAMP_STRIDE);
+        }
+
+        boolean tryLock(int segment) {
+            long stamp = stamp(segment);
+            return (stamp & 1L) == 0 && stamps.compareAndSet(segment * STAMP_STRIDE, stamp, stamp + 1);
+        }
+
+        void unlock(int segment) {
+            stamps.incrementAndGet(segment * STAMP_STRIDE);
+        }
+
+        int displacement(@Nonnull Entry<K, V> entry, int index) {
+            return (index - entry.hash) & mask;
+        }
+
+        // optimistic read, return RETRY if any visited segment is being changed or has changed
+        @SuppressWarnings("unchecked")
+        Entry<K, V> find(@Nonnull K key, int h) {
+            int index = h & mask;
+            int firstSegment = segmentOf(index);
+            int lastSegment = firstSegment;
+            int visited = 1;
+            long stamp = stamp(firstSegment);
+            if ((stamp & 1L) != 0) {
+                return RETRY;
+            }
+            // stamps only grow, same sum means no visited stamp changed
+            long stampSum = stamp;
+            Entry<K, V> found = null;
+            for (int d = 0; d <= mask; d++) {
+                int segment = segmentOf(index);
+                if (segment != lastSegment && visited <= segmentMask) {
+                    stamp = stamp(segment);
+                    if ((stamp & 1L) != 0) {
+                        return RETRY;
+                    }
+                    stampSum += stamp;
+                    lastSegment = segment;
+                    visited++;
+                }
+                Entry<K, V> entry = entries.get(index);
+                if (entry == null || displacement(entry, index) < d) {
+                    break;
+                }
+                if (entry.hash == h && entry.key.equals(key)) {
+                    found = entry;
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+            for (int i = 0, segment = firstSegment; i < visited; i++, segment = (segment + 1) & segmentMask) {
+                stampSum -= stamp(segment);
+            }
+            return stampSum == 0 ? found : RETRY;
+        }
+
+        // single thread placement before the table is published
+        void place(@Nonnull Entry<K, V> newEntry) {
+            int index = newEntry.hash & mask;
+            int distance = 0;
+            Entry<K, V> entry;
+            while ((entry = entries.get(index)) != null) {
+                int entryDistance = displacement(entry, index);
+                if (entryDistance < distance) {
+                    entries.lazySet(index, newEntry);
+                    newEntry = entry;
+                    distance = entryDistance;
+                }
+                index = (index + 1) & mask;
+                distance++;
+            }
+            entries.lazySet(index, newEntry);
+        }
+    }
+
+    // contiguous segments locked by a writer, starting from the home segment
+    private static class LockedRange<K, V> {
+        final Table<K, V> table;
+        final int first;
+        int count = 1;
+
+        LockedRange(Table<K, V> table, int first) {
+            this.table = table;
+            this.first = first;
+        }
+
+        // lock the segment of index if not locked yet, return false if failed
+        boolean cover(int index) {
+            int segment = table.segmentOf(index);
+            if (((segment - first) & table.segmentMask) < count) {
+                return true;
+            }
+            // probing moves forward slot by slot, so segment is the next one
+            if (!table.tryLock(segment)) {
+                return false;
+            }
+            count++;
+            return true;
+        }
+
+        void unlock() {
+            for (int i = 0; i < count; i++) {
+                table.unlock((first + i) & table.segmentMask);
+            }
+        }
+    }
+
+    private static class Entry<K, V> {
+        final K key;
+        final V value;
+        final int hash;
+
+        Entry(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package in.xnnyygn.robinhash;
+
+// long to long robin hood map, keys, values and probe distances in parallel arrays
+public class LongLongRobinHoodMap {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float DEFAULT_LOAD_FACTOR = 0.875f;
+
+    private final float loadFactor;
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    // 0 for empty slot, otherwise distance to home plus one
+    private int[] distances;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+
+    public LongLongRobinHoodMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, 0L);
+    }
+
+    /**
+     * Create map.
+     *
+     * @param capacity     initial capacity
+     * @param loadFactor   load factor in (0, 1]
+     * @param missingValue value returned by {@link #get(long)} and {@link #put(long, long)} when key is absent
+     */
+    public LongLongRobinHoodMap(int capacity, float loadFactor, long missingValue) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity <= 0 or capacity > " + MAX_CAPACITY);
+        }
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("load factor not in (0, 1]");
+        }
+        this.loadFactor = loadFactor;
+        this.missingValue = missingValue;
+        allocate(RobinHoodHash.tableSizeFor(capacity));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        distances = new int[capacity];
+        mask = capacity - 1;
+        threshold = (capacity == MAX_CAPACITY) ? capacity : (int) (capacity * loadFactor);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public boolean contains(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    public long get(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : missingValue;
+    }
+
+    // return index of key, or -1 if not found
+    private int indexOf(long key) {
+        int index = hash(key) & mask;
+        for (int d = 1; ; d++) {
+            // empty slot is 0, always less than d
+            if (distances[index] < d) {
+                return -1;
+            }
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Add or replace.
+     *
+     * @return true if key is new, otherwise false
+     */
+    public boolean add(long key, long value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            return false;
+        }
+        insert(key, value);
+        return true;
+    }
+
+    /**
+     * Put key and value.
+     *
+     * @return previous value, or missing value if key is new
+     */
+    public long put(long key, long value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            long previousValue = values[index];
+            values[index] = value;
+            return previousValue;
+        }
+        insert(key, value);
+        return missingValue;
+    }
+
+    private void insert(long key, long value) {
+        if (size >= threshold) {
+            resize();
+        }
+        place(key, value);
+        size++;
+    }
+
+    // key must not exist in table
+    private void place(long key, long value) {
+        int index = hash(key) & mask;
+        int distance = 1;
+        while (true) {
+            int entryDistance = distances[index];
+            if (entryDistance == 0) {
+                keys[index] = key;
+                values[index] = value;
+                distances[index] = distance;
+                return;
+            }
+            if (entryDistance < distance) {
+                // take from the rich
+                long k = keys[index];
+                long v = values[index];
+                keys[index] = key;
+                values[index] = value;
+                distances[index] = distance;
+                key = k;
+                value = v;
+                distance = entryDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+    }
+
+    private void resize() {
+        if (keys.length == MAX_CAPACITY) {
+            if (size == MAX_CAPACITY) {
+                throw new IllegalStateException("table is full");
+            }
+            return;
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int[] oldDistances = distances;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDistances[i] != 0) {
+                place(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        // shift following entries back until an empty slot or an entry at its home
+        int next = (index + 1) & mask;
+        int distance;
+        while ((distance = distances[next]) > 1) {
+            keys[index] = keys[next];
+            values[index] = values[next];
+            distances[index] = distance - 1;
+            index = next;
+            next = (next + 1) & mask;
+        }
+        distances[index] = 0;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+}
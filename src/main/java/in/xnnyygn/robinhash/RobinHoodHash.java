@@ -2,98 +2,195 @@ package in.xnnyygn.robinhash;
 
 import javax.annotation.Nonnull;
 
+// open addressing with robin hood probing and backward shift deletion
 public class RobinHoodHash<K, V> {
 
-    private final Entry<K, V>[] entries;
-    private int maxDistance = 0;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float DEFAULT_LOAD_FACTOR = 0.875f;
+
+    private final float loadFactor;
+    private Entry<K, V>[] entries;
+    private int mask;
+    private int threshold;
     private int size = 0;
 
-    @SuppressWarnings("unchecked")
     public RobinHoodHash(int capacity) {
-        this.entries = (Entry<K, V>[]) new Entry[capacity];
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public RobinHoodHash(int capacity, float loadFactor) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity <= 0 or capacity > " + MAX_CAPACITY);
+        }
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("load factor not in (0, 1]");
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(capacity));
     }
 
+    static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity);
+        return (n == capacity) ? n : n << 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        entries = (Entry<K, V>[]) new Entry[capacity];
+        mask = capacity - 1;
+        threshold = (capacity == MAX_CAPACITY) ? capacity : (int) (capacity * loadFactor);
+    }
+
+    static int hash(@Nonnull Object key) {
+        // fibonacci hashing, then fold the high bits down since the index takes the low bits
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Add or replace.
+     *
+     * @return true if key is new, otherwise false
+     */
     public boolean add(@Nonnull K key, V value) {
-        Entry<K, V> newEntry = new Entry<>(key, value);
-        int index = hash(key);
+        int h = hash(key);
+        int index = indexOf(key, h);
+        if (index >= 0) {
+            entries[index].value = value;
+            return false;
+        }
+        insert(key, value, h);
+        return true;
+    }
+
+    /**
+     * Put key and value.
+     *
+     * @return previous value, or null if key is new
+     */
+    public V put(@Nonnull K key, V value) {
+        int h = hash(key);
+        int index = indexOf(key, h);
+        if (index >= 0) {
+            Entry<K, V> entry = entries[index];
+            V previousValue = entry.value;
+            entry.value = value;
+            return previousValue;
+        }
+        insert(key, value, h);
+        return null;
+    }
+
+    private void insert(@Nonnull K key, V value, int h) {
+        if (size >= threshold) {
+            resize();
+        }
+        place(new Entry<>(key, value, h));
+        size++;
+    }
+
+    // key must not exist in table
+    private void place(@Nonnull Entry<K, V> newEntry) {
+        int index = newEntry.hash & mask;
         int distance = 0;
         while (true) {
             Entry<K, V> entry = entries[index];
             if (entry == null) {
                 entries[index] = newEntry;
-                size++;
-                return true;
-            }
-            // entries[index] != null
-            if (entry.key.equals(key)) {
-                entry.value = value;
-                return true;
+                return;
             }
             int entryDistance = displacement(entry, index);
             if (entryDistance < distance) {
-                // swap new entry and entries[index]
+                // take from the rich
                 entries[index] = newEntry;
                 newEntry = entry;
-                distance = entryDistance + 1; // no need to wrap
-            } else {
-                distance++;
+                distance = entryDistance;
             }
-            index = nextIndex(index);
-            maxDistance = Math.max(distance, maxDistance);
+            index = (index + 1) & mask;
+            distance++;
         }
     }
 
-    private int nextIndex(int index) {
-        return (index + 1) % entries.length;
-    }
-
-    private int hash(@Nonnull K key) {
-        int h = key.hashCode();
-        return Math.abs(h) % entries.length;
+    private void resize() {
+        Entry<K, V>[] oldEntries = entries;
+        if (oldEntries.length == MAX_CAPACITY) {
+            if (size == MAX_CAPACITY) {
+                throw new IllegalStateException("table is full");
+            }
+            return;
+        }
+        allocate(oldEntries.length << 1);
+        for (Entry<K, V> entry : oldEntries) {
+            if (entry != null) {
+                place(entry);
+            }
+        }
     }
 
     private int displacement(@Nonnull Entry<K, V> entry, int index) {
-        int hash = hash(entry.key);
-        return (index >= hash) ? (index - hash) : (index + entries.length - hash);
+        return (index - entry.hash) & mask;
     }
 
-    public boolean contains(@Nonnull K key) {
-        for (int index = hash(key), d = 0; d <= maxDistance; d++) {
+    // return index of key, or -1 if not found
+    private int indexOf(@Nonnull K key, int h) {
+        int index = h & mask;
+        for (int d = 0; ; d++) {
             Entry<K, V> entry = entries[index];
-            if (entry == null) {
-                return false;
+            // entry closer to its home than we are means key is absent
+            if (entry == null || displacement(entry, index) < d) {
+                return -1;
             }
-            if (entry.key.equals(key)) {
-                return true;
+            if (entry.hash == h && entry.key.equals(key)) {
+                return index;
             }
-            index = nextIndex(index);
+            index = (index + 1) & mask;
         }
-        return false;
+    }
+
+    public boolean contains(@Nonnull K key) {
+        return indexOf(key, hash(key)) >= 0;
+    }
+
+    public V get(@Nonnull K key) {
+        int index = indexOf(key, hash(key));
+        return index >= 0 ? entries[index].value : null;
     }
 
     public boolean remove(@Nonnull K key) {
-        for (int index = hash(key), d = 0; d <= maxDistance; d++) {
-            Entry<K, V> entry = entries[index];
-            if (entry == null) {
-                return false;
-            }
-            if (entry.key.equals(key)) {
-                entries[index] = null;
-                size--;
-                return true;
-            }
-            index = nextIndex(index);
+        int index = indexOf(key, hash(key));
+        if (index < 0) {
+            return false;
         }
-        return false;
+        // shift following entries back until an empty slot or an entry at its home
+        int next = (index + 1) & mask;
+        Entry<K, V> entry;
+        while ((entry = entries[next]) != null && displacement(entry, next) > 0) {
+            entries[index] = entry;
+            index = next;
+            next = (next + 1) & mask;
+        }
+        entries[index] = null;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int capacity() {
+        return entries.length;
     }
 
     private static class Entry<K, V> {
         final K key;
         V value;
+        final int hash;
 
-        Entry(K key, V value) {
+        Entry(K key, V value, int hash) {
             this.key = key;
             this.value = value;
+            this.hash = hash;
         }
     }
 }
@@ -0,0 +1,147 @@
+package in.xnnyygn.concurrent;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentHashMap2Test {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 50000;
+
+    @Test
+    public void testRandom() {
+        ConcurrentHashMap2<Integer, Integer> map = new ConcurrentHashMap2<>(2, 0.75);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testConcurrentPut() throws InterruptedException {
+        ConcurrentHashMap2<Integer, Integer> map = new ConcurrentHashMap2<>(2, 0.75);
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < N_ITEMS; j++) {
+                    map.put(base + j, j);
+                    if ((j & 1) == 0) {
+                        map.remove(base + j);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(NUM_THREADS * N_ITEMS / 2, map.size());
+        for (int i = 0; i < NUM_THREADS * N_ITEMS; i++) {
+            if ((i & 1) == 0) {
+                assertNull(map.get(i));
+            } else {
+                assertEquals(i % N_ITEMS, map.get(i).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testComputeIfAbsent() throws InterruptedException {
+        ConcurrentHashMap2<Integer, Integer> map = new ConcurrentHashMap2<>(2, 0.75);
+        AtomicInteger calls = new AtomicInteger();
+        // assertion errors in worker threads do not fail the test, keep the first one instead
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < N_ITEMS; j++) {
+                        int value = map.computeIfAbsent(j, k -> {
+                            calls.incrementAndGet();
+                            return k * 2;
+                        });
+                        assertEquals(j * 2, value);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("worker failed", failure.get());
+        }
+        assertEquals(N_ITEMS, calls.get());
+        assertEquals(N_ITEMS, map.size());
+        assertNull(map.computeIfAbsent(-1, k -> null));
+        assertFalse(map.containsKey(-1));
+    }
+
+    @Test
+    @Ignore
+    public void testThroughput() throws InterruptedException {
+        for (int round = 0; round < 5; round++) {
+            ConcurrentHashMap2<Integer, Integer> map2 = new ConcurrentHashMap2<>();
+            long t2 = measure(map2::put, map2::get);
+            ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>();
+            long t1 = measure(map::put, map::get);
+            System.out.println("ConcurrentHashMap2 " + t2 + "ms, ConcurrentHashMap " + t1 + "ms");
+        }
+    }
+
+    // 10% put, 90% get
+    private long measure(BiFunction<Integer, Integer, Integer> put, Function<Integer, Integer> get) throws InterruptedException {
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 2000000; j++) {
+                    int key = random.nextInt(1000000);
+                    if (random.nextInt(10) == 0) {
+                        put.apply(key, j);
+                    } else {
+                        get.apply(key);
+                    }
+                }
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
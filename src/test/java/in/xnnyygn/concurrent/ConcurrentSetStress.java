@@ -0,0 +1,74 @@
+package in.xnnyygn.concurrent;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Concurrent add and remove of random items by threads with seeded random, shared by tests of sets.
+ */
+public final class ConcurrentSetStress {
+
+    private ConcurrentSetStress() {
+    }
+
+    /**
+     * Each thread adds or removes a random item in {@code [0, range)} for some rounds. After all threads end,
+     * count of items contained must be successful adds minus successful removes.
+     *
+     * @param threads  count of threads, thread {@code i} uses seed {@code i}
+     * @param range    range of items
+     * @param rounds   operations per thread
+     * @param add      add item, true if added
+     * @param remove   remove item, true if removed
+     * @param contains check item
+     * @return count of items contained
+     */
+    public static int run(int threads, int range, int rounds,
+                          IntPredicate add, IntPredicate remove, IntPredicate contains) throws InterruptedException {
+        AtomicInteger balance = new AtomicInteger();
+        // assertion errors in worker threads do not fail the test, keep the first one instead
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int seed = i;
+            workers[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int j = 0; j < rounds; j++) {
+                        int x = random.nextInt(range);
+                        if (random.nextBoolean()) {
+                            if (add.test(x)) {
+                                balance.incrementAndGet();
+                            }
+                        } else if (remove.test(x)) {
+                            balance.decrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for (Thread t : workers) {
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("worker failed", failure.get());
+        }
+        int count = 0;
+        for (int x = 0; x < range; x++) {
+            if (contains.test(x)) {
+                count++;
+            }
+        }
+        assertEquals(balance.get(), count);
+        return count;
+    }
+}
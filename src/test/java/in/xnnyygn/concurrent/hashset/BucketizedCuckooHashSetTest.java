@@ -0,0 +1,60 @@
+package in.xnnyygn.concurrent.hashset;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BucketizedCuckooHashSetTest {
+
+    @Test
+    public void test() {
+        BucketizedCuckooHashSet<Integer> set = new BucketizedCuckooHashSet<>(4);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(set.add(i));
+        }
+        assertFalse(set.add(7));
+        assertTrue(set.remove(7));
+        assertFalse(set.remove(7));
+        assertFalse(set.contains(7));
+        assertTrue(set.contains(99));
+        assertEquals(99, set.size());
+    }
+
+    @Test
+    public void testRandom() {
+        BucketizedCuckooHashSet<Integer> set = new BucketizedCuckooHashSet<>(1);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), set.add(x));
+            } else {
+                assertEquals(expected.remove(x), set.remove(x));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int x = 0; x < 5000; x++) {
+            assertEquals(expected.contains(x), set.contains(x));
+        }
+    }
+
+    @Test
+    public void testLoadFactor() {
+        BucketizedCuckooHashSet<Integer> set = new BucketizedCuckooHashSet<>(1 << 16);
+        int capacity = set.capacity();
+        Random random = new Random(1);
+        while (true) {
+            int size = set.size();
+            set.add(random.nextInt());
+            if (set.capacity() != capacity) {
+                assertTrue("load factor " + (double) size / capacity, size > capacity * 0.9);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package in.xnnyygn.concurrent.hashset;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CuckooFilterTest {
+
+    private static final int NUM_THREADS = 4;
+
+    @Test
+    public void test() {
+        CuckooFilter<Integer> filter = new CuckooFilter<>(100, 0.01);
+        assertEquals(10, filter.fingerprintBits());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.add(i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(filter.remove(i));
+        }
+        assertEquals(50, filter.size());
+        for (int i = 1; i < 100; i += 2) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int n = 100000;
+        CuckooFilter<Integer> filter = new CuckooFilter<>(n, 0.01);
+        for (int i = 0; i < n; i++) {
+            assertTrue(filter.add(i));
+        }
+        int falsePositives = 0;
+        for (int i = n; i < n * 2; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < n * 0.01);
+    }
+
+    @Test
+    public void testFull() {
+        CuckooFilter<Integer> filter = new CuckooFilter<>(1000, 0.001);
+        int i = 0;
+        while (filter.add(i)) {
+            i++;
+        }
+        assertTrue("load factor " + (double) i / filter.capacity(), i > filter.capacity() * 0.9);
+        for (int j = 0; j < i; j++) {
+            assertTrue(filter.mightContain(j));
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        // room for 14000 live items, add fails only on a bug
+        CuckooFilter<Integer> filter = new CuckooFilter<>(20000, 0.001);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.add(i));
+        }
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!stopped.get()) {
+                for (int i = 0; i < 10000; i++) {
+                    if (!filter.mightContain(i)) {
+                        misses.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        // assertion errors in worker threads do not fail the test, keep the first one instead
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = 10000 + i * 1000;
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int round = 0; round < 20; round++) {
+                        for (int j = 0; j < 1000; j++) {
+                            assertTrue(filter.add(base + j));
+                        }
+                        for (int j = 0; j < 1000; j++) {
+                            assertTrue(filter.remove(base + j));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        stopped.set(true);
+        reader.join();
+        if (failure.get() != null) {
+            throw new AssertionError("worker failed", failure.get());
+        }
+        assertEquals(0, misses.get());
+        assertEquals(10000, filter.size());
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package in.xnnyygn.concurrent.hashset;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class InlineBucketTableTest {
+
+    @Test
+    public void testOverflow() {
+        BucketTable<Integer> table = new InlineBucketTable<>(1);
+        int n = InlineBucketTable.WIDTH * 2;
+        for (int i = 0; i < n; i++) {
+            assertTrue(table.add(0, i, i));
+        }
+        assertFalse(table.add(0, 3, 3));
+        // remove from slots, items move back from overflow
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(table.remove(0, i, i));
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals((i & 1) == 1, table.contains(0, i, i));
+        }
+        int[] count = {0};
+        table.forEach(0, (x, h) -> {
+            assertEquals(x.intValue(), h);
+            count[0]++;
+        });
+        assertEquals(n / 2, count[0]);
+    }
+
+    @Test
+    public void testRandom() {
+        BucketTable<Integer> table = new InlineBucketTable<>(4);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(100);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), table.add(x % 4, x, x));
+            } else {
+                assertEquals(expected.remove(x), table.remove(x % 4, x, x));
+            }
+        }
+        for (int x = 0; x < 100; x++) {
+            assertEquals(expected.contains(x), table.contains(x % 4, x, x));
+        }
+    }
+}
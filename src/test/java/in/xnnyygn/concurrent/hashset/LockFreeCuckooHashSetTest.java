@@ -0,0 +1,79 @@
+package in.xnnyygn.concurrent.hashset;
+
+import in.xnnyygn.concurrent.ConcurrentSetStress;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LockFreeCuckooHashSetTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 20000;
+
+    @Test
+    public void testRandom() {
+        LockFreeCuckooHashSet<Integer> set = new LockFreeCuckooHashSet<>(8192);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), set.add(x));
+            } else {
+                assertEquals(expected.remove(x), set.remove(x));
+            }
+        }
+        for (int x = 0; x < 5000; x++) {
+            assertEquals(expected.contains(x), set.contains(x));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFull() {
+        LockFreeCuckooHashSet<Integer> set = new LockFreeCuckooHashSet<>(4);
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        LockFreeCuckooHashSet<Integer> set = new LockFreeCuckooHashSet<>(NUM_THREADS * N_ITEMS);
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < N_ITEMS; j++) {
+                    assertTrue(set.add(base + j));
+                    if ((j & 1) == 0) {
+                        assertTrue(set.remove(base + j));
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < NUM_THREADS * N_ITEMS; i++) {
+            assertEquals((i & 1) == 1, set.contains(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentSameItems() throws InterruptedException {
+        LockFreeCuckooHashSet<Integer> set = new LockFreeCuckooHashSet<>(1024);
+        // items 1024 apart share slot in table 0, one of them is relocated to table 1
+        int n = ConcurrentSetStress.run(NUM_THREADS, 600, N_ITEMS * 5,
+                x -> set.add(x * 2), x -> set.remove(x * 2), x -> set.contains(x * 2));
+        assertTrue(set.count(1) > 0);
+        // relocated items are neither lost nor duplicated
+        assertEquals(n, set.count(0) + set.count(1));
+    }
+}
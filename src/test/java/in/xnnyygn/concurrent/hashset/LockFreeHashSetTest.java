@@ -2,10 +2,17 @@ package in.xnnyygn.concurrent.hashset;
 
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 import static org.junit.Assert.*;
 
 public class LockFreeHashSetTest {
 
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 50000;
+
     @Test
     public void test() {
         LockFreeHashSet<Integer> set = new LockFreeHashSet<>(4);
@@ -17,4 +24,86 @@ public class LockFreeHashSetTest {
         set.add(1);
         System.out.println(set);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSameHashCode() {
+        LockFreeHashSet<Key> set = new LockFreeHashSet<>(1);
+        assertTrue(set.add(new Key(1, 7)));
+        assertTrue(set.add(new Key(2, 7)));
+        assertFalse(set.add(new Key(1, 7)));
+        assertTrue(set.contains(new Key(2, 7)));
+        assertTrue(set.remove(new Key(1, 7)));
+        assertFalse(set.contains(new Key(1, 7)));
+        assertTrue(set.contains(new Key(2, 7)));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void testRandom() {
+        LockFreeHashSet<Integer> set = new LockFreeHashSet<>(1);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), set.add(x));
+            } else {
+                assertEquals(expected.remove(x), set.remove(x));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int x = 0; x < 5000; x++) {
+            assertEquals(expected.contains(x), set.contains(x));
+        }
+        assertTrue(set.bucketSize() > 1);
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        LockFreeHashSet<Integer> set = new LockFreeHashSet<>(1);
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < N_ITEMS; j++) {
+                    set.add(base + j);
+                    if ((j & 1) == 0) {
+                        set.remove(base + j);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(NUM_THREADS * N_ITEMS / 2, set.size());
+        for (int i = 0; i < NUM_THREADS * N_ITEMS; i++) {
+            assertEquals((i & 1) == 1, set.contains(i));
+        }
+    }
+
+    private static class Key {
+        private final int id;
+        private final int hashCode;
+
+        Key(int id, int hashCode) {
+            this.id = id;
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            return id == ((Key) o).id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package in.xnnyygn.concurrent.hashset;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RefinableHashSetTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 20000;
+
+    @Test
+    public void testStopTheWorld() throws InterruptedException {
+        test(new RefinableHashSet<>(4, ResizeMode.STOP_THE_WORLD));
+    }
+
+    @Test
+    public void testIncremental() throws InterruptedException {
+        RefinableHashSet<Integer> set = new RefinableHashSet<>(4, ResizeMode.INCREMENTAL);
+        test(set);
+        // finish moving
+        while (set.isMigrating()) {
+            set.contains(0);
+        }
+        assertTrue(set.table.length() > 4);
+    }
+
+    private void test(RefinableHashSet<Integer> set) throws InterruptedException {
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < N_ITEMS; j++) {
+                    set.add(base + j);
+                    if ((j & 1) == 0) {
+                        set.remove(base + j);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < NUM_THREADS * N_ITEMS; i++) {
+            assertEquals((i & 1) == 1, set.contains(i));
+        }
+        assertFalse(set.contains(-1));
+    }
+}
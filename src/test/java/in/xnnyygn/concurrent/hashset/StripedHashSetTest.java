@@ -0,0 +1,90 @@
+package in.xnnyygn.concurrent.hashset;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StripedHashSetTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 20000;
+
+    @Test
+    public void testStopTheWorld() throws InterruptedException {
+        test(new StripedHashSet<>(4, ResizeMode.STOP_THE_WORLD));
+    }
+
+    @Test
+    public void testIncremental() throws InterruptedException {
+        StripedHashSet<Integer> set = new StripedHashSet<>(4, ResizeMode.INCREMENTAL);
+        test(set);
+        // finish moving
+        while (set.isMigrating()) {
+            set.contains(0);
+        }
+        assertTrue(set.table.length() > 4);
+    }
+
+    @Test
+    public void testInlineIncremental() throws InterruptedException {
+        StripedHashSet<Integer> set = new StripedHashSet<>(4, ResizeMode.INCREMENTAL, BucketStorage.INLINE);
+        test(set);
+        assertFalse(set.add(1));
+    }
+
+    @Test
+    public void testInlineConcurrentOverflow() throws InterruptedException {
+        int capacity = 64;
+        int nBuckets = 16;
+        int perBucket = InlineBucketTable.WIDTH + 4;
+        for (int round = 0; round < 200; round++) {
+            StripedHashSet<Integer> set = new StripedHashSet<>(capacity, ResizeMode.STOP_THE_WORLD, BucketStorage.INLINE);
+            Thread[] threads = new Thread[nBuckets];
+            for (int i = 0; i < nBuckets; i++) {
+                final int bucket = i;
+                // all items of a thread in its own bucket, overflowing at the same time
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < perBucket; j++) {
+                        set.add(bucket + j * capacity);
+                    }
+                });
+            }
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            for (int i = 0; i < nBuckets; i++) {
+                for (int j = 0; j < perBucket; j++) {
+                    assertTrue(set.contains(i + j * capacity));
+                }
+            }
+        }
+    }
+
+    private void test(StripedHashSet<Integer> set) throws InterruptedException {
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < N_ITEMS; j++) {
+                    set.add(base + j);
+                    if ((j & 1) == 0) {
+                        set.remove(base + j);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < NUM_THREADS * N_ITEMS; i++) {
+            assertEquals((i & 1) == 1, set.contains(i));
+        }
+        assertFalse(set.contains(-1));
+    }
+}
@@ -0,0 +1,172 @@
+package in.xnnyygn.concurrent.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BlockingQueueAdapterTest {
+
+    private static final int NUM_THREADS = 2;
+    private static final int N_ITEMS = 20000;
+
+    @Test
+    public void test() throws InterruptedException {
+        BlockingQueue<Integer> queue = new BlockingQueueAdapter<>(new LockFreeArrayBoundedQueue<>(4), new BusySpinWaitStrategy());
+        assertEquals(4, queue.remainingCapacity());
+        queue.put(1);
+        assertTrue(queue.offer(2, 1, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.peek().intValue());
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.take().intValue());
+
+        List<Integer> items = new ArrayList<>();
+        assertEquals(1, queue.drainTo(items));
+        assertEquals(2, items.get(0).intValue());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testCollectionViews() {
+        BlockingQueue<Integer> queue = new BlockingQueueAdapter<>(new LockFreeArrayBoundedQueue<>(4), new BusySpinWaitStrategy());
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        assertEquals(1, queue.poll().intValue());
+        queue.offer(4);
+        queue.offer(5);
+        assertTrue(queue.contains(4));
+        assertFalse(queue.contains(1));
+        assertArrayEquals(new Object[]{2, 3, 4, 5}, queue.toArray());
+        assertEquals("[2, 3, 4, 5]", queue.toString());
+        try {
+            queue.remove((Object) 3);
+            fail();
+        } catch (UnsupportedOperationException ignore) {
+        }
+
+        queue = new BlockingQueueAdapter<>(new SRSWBoundedQueue<>(2), new BusySpinWaitStrategy());
+        queue.offer(1);
+        queue.offer(2);
+        assertEquals(1, queue.poll().intValue());
+        queue.offer(3);
+        assertArrayEquals(new Object[]{2, 3}, queue.toArray());
+    }
+
+    @Test
+    public void testExecutor() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new BlockingQueueAdapter<>(new LockFreeArrayBoundedQueue<>(16), new SpinYieldParkWaitStrategy()));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignore) {
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Runnable queued = () -> {
+        };
+        executor.execute(queued);
+        assertTrue(executor.getQueue().contains(queued));
+        List<Runnable> pending = executor.shutdownNow();
+        assertEquals(1, pending.size());
+        assertSame(queued, pending.get(0));
+        release.countDown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        BlockingQueue<Integer> queue = new BlockingQueueAdapter<>(new SRSWBoundedQueue<>(1), new TimedParkWaitStrategy(1, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        queue.put(1);
+        assertFalse(queue.offer(2, 20, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testTimeoutShorterThanPark() throws InterruptedException {
+        // park is capped at time remaining, wait does not last a whole period
+        BlockingQueue<Integer> queue = new BlockingQueueAdapter<>(new SRSWBoundedQueue<>(1), new TimedParkWaitStrategy(10, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        queue.put(1);
+        assertFalse(queue.offer(2, 20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        queue = new BlockingQueueAdapter<>(new SRSWBoundedQueue<>(1), new SpinYieldParkWaitStrategy(0, 0, 0, 10, TimeUnit.SECONDS));
+        start = System.nanoTime();
+        for (int i = 0; i < 40; i++) {
+            assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testInterrupt() throws InterruptedException {
+        BlockingQueue<Integer> queue = new BlockingQueueAdapter<>(new LockFreeArrayBoundedQueue<>(2), new SpinYieldParkWaitStrategy());
+        boolean[] interrupted = new boolean[]{false};
+        Thread consumer = new Thread(() -> {
+            try {
+                queue.take();
+            } catch (InterruptedException e) {
+                interrupted[0] = true;
+            }
+        });
+        consumer.start();
+        Thread.sleep(20);
+        consumer.interrupt();
+        consumer.join();
+        assertTrue(interrupted[0]);
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        testConcurrent(new SpinYieldWaitStrategy());
+        testConcurrent(new SpinYieldParkWaitStrategy());
+        testConcurrent(new TimedParkWaitStrategy(10, TimeUnit.MICROSECONDS));
+    }
+
+    private void testConcurrent(WaitStrategy waitStrategy) throws InterruptedException {
+        BlockingQueue<Integer> queue = new BlockingQueueAdapter<>(new LockFreeArrayBoundedQueue<>(16), waitStrategy);
+        AtomicLong sum = new AtomicLong(0);
+        Thread[] threads = new Thread[NUM_THREADS * 2];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int n = 1; n <= N_ITEMS; n++) {
+                        queue.put(n);
+                    }
+                } catch (InterruptedException ignore) {
+                }
+            });
+            threads[NUM_THREADS + i] = new Thread(() -> {
+                try {
+                    for (int n = 0; n < N_ITEMS; n++) {
+                        sum.addAndGet(queue.take());
+                    }
+                } catch (InterruptedException ignore) {
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(NUM_THREADS * (long) N_ITEMS * (N_ITEMS + 1) / 2, sum.get());
+        assertTrue(queue.isEmpty());
+    }
+}
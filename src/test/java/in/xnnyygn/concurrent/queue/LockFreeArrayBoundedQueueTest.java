@@ -0,0 +1,217 @@
+package in.xnnyygn.concurrent.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class LockFreeArrayBoundedQueueTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 200000;
+
+    @Test
+    public void test() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(3);
+        assertEquals(4, queue.capacity());
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        for (int round = 0; round < 10; round++) {
+            assertEquals(round, queue.poll().intValue());
+            assertTrue(queue.offer(round + 4));
+        }
+        assertEquals(10, queue.poll().intValue());
+    }
+
+    @Test
+    public void testCapacityOne() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(1);
+        assertEquals(2, queue.capacity());
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+        assertEquals(1, queue.poll().intValue());
+        assertEquals(2, queue.poll().intValue());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalCapacity() {
+        new LockFreeArrayBoundedQueue<Integer>(0);
+    }
+
+    @Test
+    public void testDrainAndFill() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(8);
+        AtomicInteger counter = new AtomicInteger(0);
+        assertEquals(5, queue.fill(counter::getAndIncrement, 5));
+        assertEquals(3, queue.fill(counter::getAndIncrement, 5));
+        assertEquals(0, queue.fill(counter::getAndIncrement, 5));
+
+        List<Integer> items = new ArrayList<>();
+        assertEquals(6, queue.drain(items::add, 6));
+        assertEquals(2, queue.fill(counter::getAndIncrement, 2));
+        assertEquals(4, queue.drain(items::add, 10));
+        assertEquals(0, queue.drain(items::add, 10));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, items.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testDrainConsumerThrows() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(i);
+        }
+        try {
+            queue.drain(x -> {
+                throw new IllegalStateException();
+            }, 4);
+            fail();
+        } catch (IllegalStateException ignore) {
+        }
+        // item passed to consumer is removed, others stay
+        assertEquals(1, queue.poll().intValue());
+        assertTrue(queue.offer(4));
+        assertTrue(queue.offer(5));
+        assertFalse(queue.offer(6));
+        for (int i = 2; i < 6; i++) {
+            assertEquals(i, queue.poll().intValue());
+        }
+    }
+
+    @Test
+    public void testDrainConsumerThrowsAfterOtherConsumer() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(i);
+        }
+        try {
+            queue.drain(x -> {
+                // another consumer takes next item
+                assertEquals(1, queue.poll().intValue());
+                throw new IllegalStateException();
+            }, 4);
+            fail();
+        } catch (IllegalStateException ignore) {
+        }
+        // no item is lost
+        assertEquals(2, queue.poll().intValue());
+        assertEquals(3, queue.poll().intValue());
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+    }
+
+    @Test
+    public void testFillSupplierReturnsNull() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(4);
+        Integer[] items = {0, 1, null, 3};
+        int[] next = {0};
+        assertEquals(2, queue.fill(() -> items[next[0]++], 4));
+        assertEquals(3, next[0]);
+        assertEquals(0, queue.poll().intValue());
+        assertEquals(1, queue.poll().intValue());
+        // released slot is reused in next round before head moves past it
+        for (int i = 10; i < 14; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(14));
+        assertEquals(10, queue.peek().intValue());
+        for (int i = 10; i < 14; i++) {
+            assertEquals(i, queue.poll().intValue());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testFillSupplierThrows() {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(4);
+        int[] next = {0};
+        try {
+            queue.fill(() -> {
+                if (next[0] == 1) {
+                    throw new IllegalStateException();
+                }
+                return next[0]++;
+            }, 4);
+            fail();
+        } catch (IllegalStateException ignore) {
+        }
+        // released slot is skipped by consumers
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(1, queue.drain(drained::add, 4));
+        assertEquals(0, drained.get(0).intValue());
+        assertNull(queue.peek());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, queue.poll().intValue());
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        LockFreeArrayBoundedQueue<Integer> queue = new LockFreeArrayBoundedQueue<>(64);
+        AtomicLong sum = new AtomicLong(0);
+        AtomicInteger count = new AtomicInteger(0);
+        Thread[] threads = new Thread[NUM_THREADS * 2];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final boolean batch = (i % 2 == 0);
+            threads[i] = new Thread(() -> {
+                int[] next = new int[]{1};
+                while (next[0] <= N_ITEMS) {
+                    if (batch) {
+                        if (queue.fill(() -> next[0]++, Math.min(16, N_ITEMS - next[0] + 1)) == 0) {
+                            Thread.yield();
+                        }
+                    } else if (queue.offer(next[0])) {
+                        next[0]++;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[NUM_THREADS + i] = new Thread(() -> {
+                Integer item;
+                while (count.get() < NUM_THREADS * N_ITEMS) {
+                    if (batch) {
+                        if (queue.drain(x -> {
+                            sum.addAndGet(x);
+                            count.incrementAndGet();
+                        }, 16) == 0) {
+                            Thread.yield();
+                        }
+                    } else if ((item = queue.poll()) != null) {
+                        sum.addAndGet(item);
+                        count.incrementAndGet();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(NUM_THREADS * (long) N_ITEMS * (N_ITEMS + 1) / 2, sum.get());
+        assertNull(queue.poll());
+    }
+}
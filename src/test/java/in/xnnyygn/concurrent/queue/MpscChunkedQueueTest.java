@@ -0,0 +1,125 @@
+package in.xnnyygn.concurrent.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MpscChunkedQueueTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 100000;
+
+    @Test
+    public void test() {
+        MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(3);
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(10, queue.size());
+        assertEquals(0, queue.peek().intValue());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, queue.poll().intValue());
+        }
+        for (int i = 5; i < 9; i++) {
+            assertEquals(i, queue.relaxedPoll().intValue());
+        }
+        assertEquals(9, queue.poll().intValue());
+        assertNull(queue.relaxedPoll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testIterator() {
+        MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(4);
+        assertFalse(queue.iterator().hasNext());
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        for (int i = 0; i < 5; i++) {
+            queue.poll();
+        }
+        Iterator<Integer> iterator = queue.iterator();
+        for (int i = 5; i < 10; i++) {
+            assertEquals(i, iterator.next().intValue());
+        }
+        assertFalse(iterator.hasNext());
+        assertTrue(queue.contains(7));
+        assertFalse(queue.contains(3));
+        try {
+            queue.remove((Object) 7);
+            fail();
+        } catch (UnsupportedOperationException ignore) {
+        }
+        assertArrayEquals(new Object[]{5, 6, 7, 8, 9}, queue.toArray());
+        assertEquals("[5, 6, 7, 8, 9]", queue.toString());
+        // items offered after creation are not seen
+        iterator = queue.iterator();
+        queue.offer(10);
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void testDrain() {
+        MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(4);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        List<Integer> items = new ArrayList<>();
+        assertEquals(3, queue.drain(items::add, 3));
+        assertEquals(7, queue.drain(items::add, 100));
+        assertEquals(0, queue.drain(items::add, 100));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, items.get(i).intValue());
+        }
+        queue.offer(10);
+        assertEquals(10, queue.poll().intValue());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(64);
+        Thread[] producers = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int id = i;
+            producers[i] = new Thread(() -> {
+                for (int n = 0; n < N_ITEMS; n++) {
+                    queue.offer(n * NUM_THREADS + id);
+                }
+            });
+        }
+        for (Thread t : producers) {
+            t.start();
+        }
+        // items of each producer are in order
+        int[] expected = new int[NUM_THREADS];
+        int count = 0;
+        Integer item;
+        while (count < NUM_THREADS * N_ITEMS) {
+            if ((count & 1) == 0) {
+                count += queue.drain(x -> {
+                    assertEquals(expected[x % NUM_THREADS]++, x / NUM_THREADS);
+                }, 32);
+            } else if ((item = queue.poll()) != null) {
+                assertEquals(expected[item % NUM_THREADS]++, item / NUM_THREADS);
+                count++;
+            } else {
+                Thread.yield();
+            }
+        }
+        for (Thread t : producers) {
+            t.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+package in.xnnyygn.concurrent.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SRSWBoundedQueueTest {
+
+    private static final int N_ITEMS = 1000000;
+
+    @Test
+    public void test() {
+        SRSWBoundedQueue<Integer> queue = new SRSWBoundedQueue<>(3);
+        assertEquals(4, queue.capacity());
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        for (int round = 0; round < 10; round++) {
+            assertEquals(round, queue.poll().intValue());
+            assertTrue(queue.offer(round + 4));
+        }
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void testBatch() {
+        SRSWBoundedQueue<Integer> queue = new SRSWBoundedQueue<>(4);
+        assertEquals(3, queue.offer(new Integer[]{0, 1, 2}));
+        assertEquals(1, queue.offer(new Integer[]{3, 4, 5}));
+        assertEquals(0, queue.offer(new Integer[]{4}));
+
+        List<Integer> items = new ArrayList<>();
+        assertEquals(2, queue.drain(items::add, 2));
+        assertEquals(2, queue.offer(new Integer[]{4, 5}));
+        assertEquals(4, queue.drain(items::add, 10));
+        assertEquals(0, queue.drain(items::add, 10));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, items.get(i).intValue());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullInBatch() {
+        new SRSWBoundedQueue<Integer>(4).offer(new Integer[]{1, null});
+    }
+
+    @Test
+    public void testDrainConsumerThrows() {
+        SRSWBoundedQueue<Integer> queue = new SRSWBoundedQueue<>(4);
+        queue.offer(new Integer[]{1, 2, 3});
+        try {
+            queue.drain(x -> {
+                if (x == 2) {
+                    throw new IllegalStateException();
+                }
+            }, 3);
+            fail();
+        } catch (IllegalStateException ignore) {
+        }
+        assertEquals(3, queue.poll().intValue());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        SRSWBoundedQueue<Integer> queue = new SRSWBoundedQueue<>(128);
+        Thread producer = new Thread(() -> {
+            Integer[] batch = new Integer[16];
+            int next = 0;
+            int n;
+            while (next < N_ITEMS) {
+                if ((next & 1) == 0 && N_ITEMS - next >= batch.length) {
+                    for (int i = 0; i < batch.length; i++) {
+                        batch[i] = next + i;
+                    }
+                    n = queue.offer(batch);
+                } else {
+                    n = queue.offer(next) ? 1 : 0;
+                }
+                if (n == 0) {
+                    Thread.yield();
+                }
+                next += n;
+            }
+        });
+        int[] expected = new int[]{0};
+        Thread consumer = new Thread(() -> {
+            Integer item;
+            while (expected[0] < N_ITEMS) {
+                if ((expected[0] & 1) == 0) {
+                    if (queue.drain(x -> assertEquals(expected[0]++, x.intValue()), 32) == 0) {
+                        Thread.yield();
+                    }
+                } else if ((item = queue.poll()) != null) {
+                    assertEquals(expected[0]++, item.intValue());
+                } else {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        assertEquals(N_ITEMS, expected[0]);
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,42 @@
+package in.xnnyygn.concurrent.queue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SpinYieldParkWaitStrategyTest {
+
+    @Test
+    public void testAdapt() {
+        SpinYieldParkWaitStrategy strategy = new SpinYieldParkWaitStrategy(4, 64, 8, 1, TimeUnit.MILLISECONDS);
+        int budget = strategy.spins();
+        assertEquals(11, budget);
+
+        // ended while spinning
+        strategy.done(budget);
+        assertEquals(budget, strategy.spins());
+
+        // ended while yielding
+        strategy.done(budget + 1);
+        assertEquals(budget * 2, strategy.spins());
+        for (int i = 0; i < 10; i++) {
+            strategy.done(strategy.spins() + 1);
+        }
+        assertEquals(64, strategy.spins());
+
+        // ended after parking
+        strategy.done(64 + 8 + 1);
+        assertEquals(32, strategy.spins());
+        for (int i = 0; i < 10; i++) {
+            strategy.done(1000);
+        }
+        assertEquals(4, strategy.spins());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalBudget() {
+        new SpinYieldParkWaitStrategy(8, 4, 0, 1, TimeUnit.MILLISECONDS);
+    }
+}
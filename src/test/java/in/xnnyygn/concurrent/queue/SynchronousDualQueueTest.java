@@ -0,0 +1,179 @@
+package in.xnnyygn.concurrent.queue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SynchronousDualQueueTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 5000;
+
+    @Test
+    public void testNoCounterpart() throws InterruptedException {
+        for (boolean fair : new boolean[]{true, false}) {
+            SynchronousDualQueue<Integer> queue = new SynchronousDualQueue<>(fair);
+            assertFalse(queue.offer(1));
+            assertNull(queue.poll());
+            assertFalse(queue.offer(1, 10, TimeUnit.MILLISECONDS));
+            assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testHandoff() throws InterruptedException {
+        for (boolean fair : new boolean[]{true, false}) {
+            SynchronousDualQueue<Integer> queue = new SynchronousDualQueue<>(fair);
+            Thread consumer = new Thread(() -> {
+                try {
+                    assertEquals(1, queue.take().intValue());
+                    assertEquals(2, queue.poll(10, TimeUnit.SECONDS).intValue());
+                } catch (InterruptedException ignore) {
+                }
+            });
+            consumer.start();
+            queue.put(1);
+            assertTrue(queue.offer(2, 10, TimeUnit.SECONDS));
+            consumer.join();
+        }
+    }
+
+    @Test
+    public void testOrder() throws InterruptedException {
+        // fair matches first waiting consumer, unfair matches last
+        assertEquals(0, firstServed(true));
+        assertEquals(1, firstServed(false));
+    }
+
+    private int firstServed(boolean fair) throws InterruptedException {
+        SynchronousDualQueue<Integer> queue = new SynchronousDualQueue<>(fair);
+        int[] served = new int[]{-1, -1};
+        Thread[] consumers = new Thread[2];
+        for (int i = 0; i < consumers.length; i++) {
+            final int id = i;
+            consumers[i] = new Thread(() -> {
+                try {
+                    served[id] = queue.take();
+                } catch (InterruptedException ignore) {
+                }
+            });
+            consumers[i].start();
+            // wait for consumer to be enqueued
+            Thread.sleep(50);
+        }
+        queue.put(0);
+        queue.put(1);
+        for (Thread t : consumers) {
+            t.join();
+        }
+        return served[0] == 0 ? 0 : 1;
+    }
+
+    @Test
+    public void testInterrupt() throws InterruptedException {
+        for (boolean fair : new boolean[]{true, false}) {
+            SynchronousDualQueue<Integer> queue = new SynchronousDualQueue<>(fair);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                try {
+                    queue.put(1);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            });
+            producer.start();
+            Thread.sleep(20);
+            producer.interrupt();
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+            // cancelled producer is not matched
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void testCancelledCleaned() throws InterruptedException {
+        for (boolean fair : new boolean[]{true, false}) {
+            SynchronousDualQueue<Integer> queue = new SynchronousDualQueue<>(fair);
+            for (int i = 0; i < 100; i++) {
+                assertNull(queue.poll(1, TimeUnit.MICROSECONDS));
+            }
+            Thread producer = new Thread(() -> {
+                try {
+                    queue.put(1);
+                } catch (InterruptedException ignore) {
+                }
+            });
+            producer.start();
+            assertEquals(1, queue.take().intValue());
+            producer.join();
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        for (boolean fair : new boolean[]{true, false}) {
+            SynchronousDualQueue<Integer> queue = new SynchronousDualQueue<>(fair);
+            AtomicLong sum = new AtomicLong(0);
+            Thread[] threads = new Thread[NUM_THREADS * 2];
+            for (int i = 0; i < NUM_THREADS; i++) {
+                final boolean timed = (i % 2 == 0);
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int n = 1; n <= N_ITEMS; n++) {
+                            if (timed) {
+                                while (!queue.offer(n, 100, TimeUnit.MICROSECONDS)) {
+                                    // retry
+                                }
+                            } else {
+                                queue.put(n);
+                            }
+                        }
+                    } catch (InterruptedException ignore) {
+                    }
+                });
+                threads[NUM_THREADS + i] = new Thread(() -> {
+                    try {
+                        Integer item;
+                        for (int n = 0; n < N_ITEMS; n++) {
+                            if (timed) {
+                                while ((item = queue.poll(100, TimeUnit.MICROSECONDS)) == null) {
+                                    // retry
+                                }
+                            } else {
+                                item = queue.take();
+                            }
+                            sum.addAndGet(item);
+                        }
+                    } catch (InterruptedException ignore) {
+                    }
+                });
+            }
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertEquals(NUM_THREADS * (long) N_ITEMS * (N_ITEMS + 1) / 2, sum.get());
+        }
+    }
+
+    @Test
+    public void testExecutor() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 1, TimeUnit.SECONDS,
+                new SynchronousDualQueue<>(false));
+        CountDownLatch latch = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(latch::countDown);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,75 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import in.xnnyygn.concurrent.ConcurrentSetStress;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class CompactSkipListSetTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 10000;
+
+    @Test
+    public void testRandom() {
+        CompactSkipListSet<Integer> set = new CompactSkipListSet<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        assertNull(set.first());
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), set.add(x));
+            } else {
+                assertEquals(expected.remove(x), set.remove(x));
+            }
+        }
+        for (int x = -1; x <= 5000; x++) {
+            assertEquals(expected.contains(x), set.contains(x));
+            assertEquals(expected.ceiling(x), set.ceiling(x));
+        }
+        assertEquals(expected.first(), set.first());
+        List<Integer> items = new ArrayList<>();
+        set.forEach(items::add);
+        assertEquals(new ArrayList<>(expected), items);
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        CompactSkipListSet<Integer> set = new CompactSkipListSet<>(Integer::compare, 0.5);
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+        }
+        for (Iterator<Integer> iterator = set.iterator(); iterator.hasNext(); ) {
+            if ((iterator.next() & 1) == 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(Integer.valueOf(1), set.first());
+        assertFalse(set.contains(98));
+        assertTrue(set.contains(99));
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        CompactSkipListSet<Integer> set = new CompactSkipListSet<>(Integer::compare);
+        int n = ConcurrentSetStress.run(NUM_THREADS, N_ITEMS, N_ITEMS * 10, set::add, set::remove, set::contains);
+        int count = 0;
+        int last = -1;
+        for (int x : set) {
+            assertTrue(x > last);
+            last = x;
+            count++;
+        }
+        assertEquals(n, count);
+        for (int x = 0; x < N_ITEMS; x++) {
+            assertEquals(set.contains(x), Integer.valueOf(x).equals(set.ceiling(x)));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import in.xnnyygn.concurrent.ConcurrentSetStress;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LazySkipList2Test {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 10000;
+
+    @Test
+    public void testSameHashCode() {
+        LazySkipList2<String> list = new LazySkipList2<>(String::compareTo);
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertTrue(list.add("Aa"));
+        assertFalse(list.contains("BB"));
+        assertTrue(list.add("BB"));
+        assertTrue(list.remove("Aa"));
+        assertTrue(list.contains("BB"));
+    }
+
+    @Test
+    public void testRandom() {
+        LazySkipList2<Integer> list = new LazySkipList2<>(Integer::compare, 0.25);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), list.add(x));
+            } else {
+                assertEquals(expected.remove(x), list.remove(x));
+            }
+        }
+        for (int x = -1; x <= 5000; x++) {
+            assertEquals(expected.contains(x), list.contains(x));
+            assertEquals(expected.ceiling(x), list.ceiling(x));
+            assertEquals(expected.floor(x), list.floor(x));
+        }
+        assertEquals(new ArrayList<>(expected.tailSet(1000)), toList(list.ceilingIterator(1000)));
+        assertEquals(new ArrayList<>(expected.headSet(1000, true).descendingSet()), toList(list.floorIterator(1000)));
+        assertFalse(list.ceilingIterator(5000).hasNext());
+        assertFalse(list.floorIterator(-1).hasNext());
+    }
+
+    @Test
+    public void testConcurrentScan() throws InterruptedException {
+        LazySkipList2<Integer> list = new LazySkipList2<>(Integer::compare);
+        // odd items are never removed
+        for (int i = 1; i < N_ITEMS; i += 2) {
+            list.add(i);
+        }
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicInteger errors = new AtomicInteger();
+        Thread scanner = new Thread(() -> {
+            while (!stopped.get()) {
+                int last = -1;
+                int odd = 0;
+                for (Iterator<Integer> iterator = list.ceilingIterator(0); iterator.hasNext(); ) {
+                    int x = iterator.next();
+                    if (x <= last) {
+                        errors.incrementAndGet();
+                    }
+                    if ((x & 1) == 1) {
+                        odd++;
+                    }
+                    last = x;
+                }
+                last = N_ITEMS;
+                for (Iterator<Integer> iterator = list.floorIterator(N_ITEMS); iterator.hasNext(); ) {
+                    int x = iterator.next();
+                    if (x >= last) {
+                        errors.incrementAndGet();
+                    }
+                    if ((x & 1) == 1) {
+                        odd--;
+                    }
+                    last = x;
+                }
+                if (odd != 0) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        scanner.start();
+        try {
+            ConcurrentSetStress.run(NUM_THREADS, N_ITEMS / 2, N_ITEMS * 5,
+                    x -> list.add(x * 2), x -> list.remove(x * 2), x -> list.contains(x * 2));
+        } finally {
+            stopped.set(true);
+            scanner.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,47 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import in.xnnyygn.concurrent.ConcurrentSetStress;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LazySkipListTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 10000;
+
+    @Test
+    public void testRandom() {
+        LazySkipList<Integer> list = new LazySkipList<>(0.25);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), list.add(x));
+            } else {
+                assertEquals(expected.remove(x), list.remove(x));
+            }
+        }
+        for (int x = 0; x < 5000; x++) {
+            assertEquals(expected.contains(x), list.contains(x));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalProbability() {
+        new LazySkipList<Integer>(1);
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        LazySkipList<Integer> list = new LazySkipList<>();
+        ConcurrentSetStress.run(NUM_THREADS, N_ITEMS, N_ITEMS * 5, list::add, list::remove, list::contains);
+        // removed nodes are unlinked at every level of their towers
+        assertEquals(0, list.removedLinked());
+    }
+}
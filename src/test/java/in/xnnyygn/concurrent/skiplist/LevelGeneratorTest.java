@@ -0,0 +1,34 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LevelGeneratorTest {
+
+    @Test
+    public void testMaxLevel() {
+        assertEquals(32, new LevelGenerator(0.5).maxLevel());
+        assertEquals(16, new LevelGenerator(0.25).maxLevel());
+    }
+
+    @Test
+    public void testDistribution() {
+        LevelGenerator generator = new LevelGenerator(0.25);
+        int[] counts = new int[generator.maxLevel() + 1];
+        for (int i = 0; i < 100000; i++) {
+            counts[generator.nextLevel(generator.maxLevel())]++;
+        }
+        // 3/4 at level 0, 3/16 at level 1
+        assertEquals(75000, counts[0], 1500);
+        assertEquals(18750, counts[1], 1500);
+    }
+
+    @Test
+    public void testLimit() {
+        LevelGenerator generator = new LevelGenerator(0.9);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(generator.nextLevel(2) <= 2);
+        }
+    }
+}
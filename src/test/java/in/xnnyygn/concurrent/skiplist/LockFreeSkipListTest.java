@@ -0,0 +1,68 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import in.xnnyygn.concurrent.ConcurrentSetStress;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LockFreeSkipListTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 10000;
+
+    @Test
+    public void test() {
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+        assertFalse(list.contains(1));
+        assertTrue(list.add(1));
+        assertFalse(list.add(1));
+        assertTrue(list.contains(1));
+        assertTrue(list.remove(1));
+        assertFalse(list.remove(1));
+        assertFalse(list.contains(1));
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>(0.25);
+        ConcurrentSetStress.run(NUM_THREADS, N_ITEMS, N_ITEMS * 5, list::add, list::remove, list::contains);
+        // level is raised before linking, and never beyond max level
+        assertTrue(list.linkedLevel() <= list.highestLevel());
+        assertTrue(list.highestLevel() <= new LevelGenerator(0.25).maxLevel());
+    }
+
+    @Test
+    public void testBulkLoad() {
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            items.add(i * 2);
+        }
+        items.add(19998);
+        assertEquals(10000, list.bulkLoad(items.iterator()));
+        assertTrue(list.contains(0));
+        assertTrue(list.contains(19998));
+        assertFalse(list.contains(3));
+        assertTrue(list.add(3));
+        assertTrue(list.remove(4));
+        assertTrue(list.contains(3));
+        assertFalse(list.contains(4));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBulkLoadNotEmpty() {
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+        list.add(1);
+        list.bulkLoad(Collections.singletonList(2).iterator());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkLoadNotSorted() {
+        new LockFreeSkipList<Integer>().bulkLoad(Arrays.asList(2, 1).iterator());
+    }
+}
@@ -0,0 +1,84 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class LongSkipListMapTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_KEYS = 1000;
+
+    @Test
+    public void test() {
+        LongSkipListMap<String> map = new LongSkipListMap<>();
+        assertNull(map.put(Long.MAX_VALUE, "max"));
+        assertNull(map.put(Long.MIN_VALUE, "min"));
+        assertNull(map.put(0, "zero"));
+        assertEquals(Long.MIN_VALUE, map.firstKey());
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertEquals("zero!", map.compute(0, (k, v) -> v + "!"));
+        assertEquals("1", map.computeIfAbsent(1, Long::toString));
+        assertEquals("min", map.remove(Long.MIN_VALUE));
+        assertEquals(0, map.firstKey());
+        assertEquals(3, map.size());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testFirstKeyEmpty() {
+        new LongSkipListMap<String>().firstKey();
+    }
+
+    @Test
+    public void testRandom() {
+        LongSkipListMap<Integer> map = new LongSkipListMap<>();
+        Map<Long, Integer> expected = new TreeMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(5000) - 2500;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = -2500; key < 2500; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testConcurrentMerge() throws InterruptedException {
+        LongSkipListMap<Integer> map = new LongSkipListMap<>();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (long key = 0; key < N_KEYS; key++) {
+                        map.merge(key, 1, Integer::sum);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (long key = 0; key < N_KEYS; key++) {
+            assertEquals(NUM_THREADS * 50, map.get(key).intValue());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SkipListMap3Test {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_KEYS = 1000;
+
+    @Test
+    public void test() {
+        SkipListMap3<Integer, String> map = new SkipListMap3<>(Integer::compare);
+        assertNull(map.putIfAbsent(1, "a"));
+        assertEquals("a", map.putIfAbsent(1, "b"));
+        assertEquals("a", map.replace(1, "c"));
+        assertNull(map.replace(2, "c"));
+        assertFalse(map.containsKey(2));
+        assertFalse(map.replace(1, "a", "d"));
+        assertTrue(map.replace(1, "c", "d"));
+        assertFalse(map.remove(1, "c"));
+        assertTrue(map.remove(1, "d"));
+        assertNull(map.get(1));
+        assertEquals("x", map.computeIfAbsent(3, k -> "x"));
+        assertEquals("x", map.computeIfAbsent(3, k -> "y"));
+        assertNull(map.computeIfPresent(4, (k, v) -> v + "z"));
+        assertEquals("xz", map.computeIfPresent(3, (k, v) -> v + "z"));
+        assertNull(map.compute(3, (k, v) -> null));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testRandom() {
+        SkipListMap3<Integer, Integer> map = new SkipListMap3<>(Integer::compare);
+        Map<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(5000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                case 2:
+                    assertEquals(expected.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+                    break;
+                default:
+                    // remove odd values
+                    assertEquals(expected.computeIfPresent(key, (k, v) -> (v & 1) == 1 ? null : v + 1),
+                            map.computeIfPresent(key, (k, v) -> (v & 1) == 1 ? null : v + 1));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 5000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testConcurrentMerge() throws InterruptedException {
+        SkipListMap3<Integer, Integer> map = new SkipListMap3<>(Integer::compare);
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (int key = 0; key < N_KEYS; key++) {
+                        map.merge(key, 1, Integer::sum);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int key = 0; key < N_KEYS; key++) {
+            assertEquals(NUM_THREADS * 50, map.get(key).intValue());
+        }
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        SkipListMap3<Integer, Integer> map = new SkipListMap3<>(Integer::compare);
+        AtomicInteger balance = new AtomicInteger();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int j = 0; j < 100000; j++) {
+                    int key = random.nextInt(N_KEYS);
+                    // +1 or -1, remove key at 0
+                    int delta = random.nextBoolean() ? 1 : -1;
+                    map.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+                    balance.addAndGet(delta);
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        int sum = 0;
+        for (int key = 0; key < N_KEYS; key++) {
+            Integer value = map.get(key);
+            assertNotEquals(Integer.valueOf(0), value);
+            sum += value == null ? 0 : value;
+        }
+        assertEquals(balance.get(), sum);
+    }
+}
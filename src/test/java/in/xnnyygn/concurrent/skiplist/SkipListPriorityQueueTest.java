@@ -0,0 +1,109 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class SkipListPriorityQueueTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 100000;
+
+    @Test
+    public void testRandom() {
+        SkipListPriorityQueue<Integer> queue = new SkipListPriorityQueue<>(Integer::compare);
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.removeMin());
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            if (random.nextInt(3) > 0) {
+                int x = random.nextInt(1000);
+                queue.add(x);
+                expected.add(x);
+            } else {
+                assertEquals(expected.poll(), queue.removeMin());
+            }
+        }
+        while (!expected.isEmpty()) {
+            assertFalse(queue.isEmpty());
+            assertEquals(expected.poll(), queue.removeMin());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.removeMin());
+    }
+
+    @Test
+    public void testSamePriority() {
+        SkipListPriorityQueue<int[]> queue = new SkipListPriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+        for (int i = 0; i < 100; i++) {
+            queue.add(new int[]{i % 2, i});
+        }
+        // insertion order
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(i, queue.removeMin()[1]);
+        }
+        for (int i = 1; i < 100; i += 2) {
+            assertEquals(i, queue.removeMin()[1]);
+        }
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        SkipListPriorityQueue<Integer> queue = new SkipListPriorityQueue<>(Integer::compare);
+        AtomicIntegerArray removed = new AtomicIntegerArray(N_ITEMS * NUM_THREADS);
+        AtomicInteger nRemoved = new AtomicInteger();
+        Thread[] threads = new Thread[NUM_THREADS * 2];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(base);
+                for (int j = 0; j < N_ITEMS; j++) {
+                    // not in order
+                    queue.add(base + (j * 7919 + random.nextInt(2)) % N_ITEMS);
+                }
+            });
+        }
+        for (int i = NUM_THREADS; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                while (nRemoved.get() < N_ITEMS * NUM_THREADS / 2) {
+                    Integer x = queue.removeMin();
+                    if (x != null) {
+                        removed.incrementAndGet(x);
+                        nRemoved.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Integer x;
+        int last = -1;
+        while ((x = queue.removeMin()) != null) {
+            assertTrue(x >= last);
+            last = x;
+            removed.incrementAndGet(x);
+        }
+        // each added item is removed exactly once
+        int[] added = new int[N_ITEMS * NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            int base = i * N_ITEMS;
+            Random random = new Random(base);
+            for (int j = 0; j < N_ITEMS; j++) {
+                added[base + (j * 7919 + random.nextInt(2)) % N_ITEMS]++;
+            }
+        }
+        for (int i = 0; i < added.length; i++) {
+            assertEquals(added[i], removed.get(i));
+        }
+    }
+}
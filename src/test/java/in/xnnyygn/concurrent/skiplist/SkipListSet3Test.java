@@ -0,0 +1,333 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SkipListSet3Test {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 20000;
+
+    @Test
+    public void testRandom() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(x), set.add(x) == null);
+            } else {
+                assertEquals(expected.remove(x), set.remove(x) != null);
+            }
+        }
+        for (int x = -1; x <= 5000; x++) {
+            assertEquals(expected.contains(x), set.contains(x));
+            assertEquals(expected.ceiling(x), set.ceiling(x));
+            assertEquals(expected.higher(x), set.higher(x));
+            assertEquals(expected.floor(x), set.floor(x));
+            assertEquals(expected.lower(x), set.lower(x));
+        }
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        assertEquals(new ArrayList<>(expected), toList(set));
+        assertEquals(new ArrayList<>(expected.subSet(1000, 2000)), toList(set.subSet(1000, 2000)));
+        assertEquals(new ArrayList<>(expected.subSet(-5, 1)), toList(set.subSet(-5, 1)));
+    }
+
+    @Test
+    public void testEmpty() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        assertNull(set.first());
+        assertNull(set.last());
+        assertNull(set.ceiling(1));
+        assertNull(set.floor(1));
+        assertFalse(set.iterator().hasNext());
+        set.add(1);
+        set.remove(1);
+        assertNull(set.last());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+        }
+        for (Iterator<Integer> iterator = set.iterator(); iterator.hasNext(); ) {
+            if ((iterator.next() & 1) == 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(Integer.valueOf(1), set.first());
+        assertEquals(Integer.valueOf(99), set.last());
+        assertEquals(50, toList(set).size());
+    }
+
+    @Test
+    public void testConcurrentScan() throws InterruptedException {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        // odd items are never removed
+        for (int i = 1; i < N_ITEMS; i += 2) {
+            set.add(i);
+        }
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicInteger errors = new AtomicInteger();
+        Thread scanner = new Thread(() -> {
+            while (!stopped.get()) {
+                int last = -1;
+                int odd = 0;
+                for (int x : set.subSet(0, N_ITEMS)) {
+                    if (x <= last) {
+                        errors.incrementAndGet();
+                    }
+                    if ((x & 1) == 1) {
+                        odd++;
+                    }
+                    last = x;
+                }
+                if (odd != N_ITEMS / 2) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        scanner.start();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int j = 0; j < N_ITEMS * 5; j++) {
+                    int x = random.nextInt(N_ITEMS / 2) * 2;
+                    if (random.nextBoolean()) {
+                        set.add(x);
+                    } else {
+                        set.remove(x);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        stopped.set(true);
+        scanner.join();
+        assertEquals(0, errors.get());
+        for (int i = 1; i < N_ITEMS; i += 2) {
+            assertTrue(set.contains(i));
+            assertEquals(Integer.valueOf(i), set.ceiling(i));
+        }
+    }
+
+    @Test
+    public void testPollFirst() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        assertNull(set.pollFirst());
+        for (int i = 100; i > 0; i--) {
+            set.add(i);
+        }
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(Integer.valueOf(i), set.pollFirst());
+        }
+        assertNull(set.pollFirst());
+        assertNull(set.first());
+    }
+
+    @Test
+    public void testBulkLoad() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            items.add(i * 2);
+            if (i % 100 == 0) {
+                // duplicate
+                items.add(i * 2);
+            }
+        }
+        assertEquals(100000, set.bulkLoad(items.iterator()));
+        assertTrue(set.contains(0));
+        assertFalse(set.contains(1));
+        assertEquals(Integer.valueOf(199998), set.last());
+        assertEquals(Integer.valueOf(1002), set.ceiling(1001));
+        // still a valid skip list after load
+        assertNull(set.add(1));
+        assertNotNull(set.remove(2));
+        assertEquals(Integer.valueOf(1), set.higher(0));
+        assertEquals(Integer.valueOf(1), set.floor(3));
+        assertEquals(100000, toList(set).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBulkLoadNotEmpty() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        set.add(1);
+        set.bulkLoad(Collections.singletonList(2).iterator());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkLoadNotSorted() {
+        new SkipListSet3<Integer>(Integer::compare).bulkLoad(Arrays.asList(2, 1).iterator());
+    }
+
+    @Test
+    public void testAddAll() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            int x = random.nextInt(100000);
+            set.add(x);
+            expected.add(x);
+        }
+        for (int round = 0; round < 100; round++) {
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                batch.add(random.nextInt(100000));
+            }
+            Collections.sort(batch);
+            int added = 0;
+            for (int x : batch) {
+                if (expected.add(x)) {
+                    added++;
+                }
+            }
+            assertEquals(added, set.addAll(batch));
+        }
+        assertEquals(new ArrayList<>(expected), toList(set));
+    }
+
+    @Test
+    public void testConcurrentAddAll() throws InterruptedException {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        AtomicInteger added = new AtomicInteger();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int round = 0; round < 200; round++) {
+                    List<Integer> batch = new ArrayList<>();
+                    for (int j = 0; j < 100; j++) {
+                        batch.add(random.nextInt(N_ITEMS));
+                    }
+                    Collections.sort(batch);
+                    added.addAndGet(set.addAll(batch));
+                    set.remove(random.nextInt(N_ITEMS));
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        List<Integer> items = toList(set);
+        for (int i = 1; i < items.size(); i++) {
+            assertTrue(items.get(i - 1) < items.get(i));
+        }
+        assertTrue(items.size() <= added.get());
+    }
+
+    @Test
+    public void testAddAllParallel() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        set.add(5);
+        List<Integer> batch = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            batch.add(i);
+        }
+        Collections.shuffle(batch, new Random(1));
+        assertEquals(49999, set.addAllParallel(batch));
+        List<Integer> items = toList(set);
+        assertEquals(50000, items.size());
+        for (int i = 0; i < 50000; i++) {
+            assertEquals(Integer.valueOf(i), items.get(i));
+        }
+    }
+
+    @Test
+    public void testFinger() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        SkipListSet3.Finger<Integer> finger = set.newFinger();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1);
+        int x = 0;
+        for (int i = 0; i < 100000; i++) {
+            // mostly near the previous one
+            x = random.nextInt(10) == 0 ? random.nextInt(10000) : Math.max(0, x + random.nextInt(10) - 3);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.contains(x), set.contains(x, finger));
+                    break;
+                case 1:
+                    assertEquals(expected.add(x), set.add(x, finger) == null);
+                    break;
+                default:
+                    assertEquals(expected.remove(x), set.remove(x) != null);
+            }
+        }
+        assertEquals(new ArrayList<>(expected), toList(set));
+        for (int y = 0; y < 10000; y++) {
+            assertEquals(expected.contains(y), set.contains(y));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFingerOfAnotherSet() {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        new SkipListSet3<Integer>(Integer::compare).add(1, set.newFinger());
+    }
+
+    @Test
+    public void testConcurrentAppend() throws InterruptedException {
+        SkipListSet3<Integer> set = new SkipListSet3<>(Integer::compare);
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int offset = i;
+            threads[i] = new Thread(() -> {
+                SkipListSet3.Finger<Integer> finger = set.newFinger();
+                for (int j = 0; j < N_ITEMS; j++) {
+                    set.add(j * NUM_THREADS + offset, finger);
+                    if (j % 10 == 0) {
+                        set.remove(j * NUM_THREADS + offset);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        List<Integer> items = toList(set);
+        assertEquals(N_ITEMS * NUM_THREADS * 9 / 10, items.size());
+        for (int x : items) {
+            assertNotEquals(0, (x / NUM_THREADS) % 10);
+            assertTrue(set.contains(x));
+        }
+    }
+
+    private static List<Integer> toList(Iterable<Integer> iterable) {
+        List<Integer> list = new ArrayList<>();
+        for (int x : iterable) {
+            list.add(x);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,106 @@
+package in.xnnyygn.concurrent.skiplist;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class SprayListPriorityQueueTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 100000;
+
+    @Test
+    public void testExact() {
+        SprayListPriorityQueue<Integer> queue = new SprayListPriorityQueue<>(Integer::compare, 1);
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            int x = random.nextInt(1000);
+            queue.add(x);
+            expected.add(x);
+        }
+        while (!expected.isEmpty()) {
+            assertEquals(expected.poll(), queue.removeMin());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.removeMin());
+    }
+
+    @Test
+    public void testRelaxed() {
+        SprayListPriorityQueue<Integer> queue = new SprayListPriorityQueue<>(Integer::compare, 64);
+        for (int i = 0; i < N_ITEMS; i++) {
+            queue.add(i);
+        }
+        // every removal is among the first items
+        TreeSet<Integer> remaining = new TreeSet<>();
+        for (int i = 0; i < N_ITEMS; i++) {
+            remaining.add(i);
+        }
+        int maxRank = 0;
+        for (int i = 0; i < N_ITEMS / 2; i++) {
+            int x = queue.removeMin();
+            maxRank = Math.max(maxRank, remaining.headSet(x).size());
+            assertTrue(remaining.remove(x));
+        }
+        assertTrue(maxRank > 0);
+        // p log^3 p
+        assertTrue("rank " + maxRank, maxRank < 64 * 6 * 6 * 6);
+        assertEquals(remaining.pollFirst(), queue.removeMinExact());
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        SprayListPriorityQueue<Integer> queue = new SprayListPriorityQueue<>(Integer::compare, NUM_THREADS);
+        AtomicIntegerArray removed = new AtomicIntegerArray(N_ITEMS);
+        AtomicInteger nRemoved = new AtomicInteger();
+        Thread[] threads = new Thread[NUM_THREADS * 2];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int j = 0; j < N_ITEMS / NUM_THREADS; j++) {
+                    // duplicated items
+                    queue.add(random.nextInt(N_ITEMS));
+                }
+            });
+        }
+        for (int i = NUM_THREADS; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                while (nRemoved.get() < N_ITEMS / 2) {
+                    Integer x = queue.removeMin();
+                    if (x != null) {
+                        removed.incrementAndGet(x);
+                        nRemoved.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Integer x;
+        while ((x = queue.removeMin()) != null) {
+            removed.incrementAndGet(x);
+        }
+        int[] added = new int[N_ITEMS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            Random random = new Random(i);
+            for (int j = 0; j < N_ITEMS / NUM_THREADS; j++) {
+                added[random.nextInt(N_ITEMS)]++;
+            }
+        }
+        for (int i = 0; i < N_ITEMS; i++) {
+            assertEquals(added[i], removed.get(i));
+        }
+    }
+}
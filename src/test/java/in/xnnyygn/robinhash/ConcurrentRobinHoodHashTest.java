@@ -0,0 +1,82 @@
+package in.xnnyygn.robinhash;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentRobinHoodHashTest {
+
+    private static final int NUM_THREADS = 4;
+    private static final int N_ITEMS = 20000;
+
+    @Test
+    public void testRandom() {
+        ConcurrentRobinHoodHash<Integer, Integer> map = new ConcurrentRobinHoodHash<>(8, 0.75f, 4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        ConcurrentRobinHoodHash<Integer, Integer> map = new ConcurrentRobinHoodHash<>(16, 0.75f, 8);
+        // stable keys are never removed, readers must always see them
+        for (int i = 0; i < 1000; i++) {
+            map.put(-i - 1, i);
+        }
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Thread[] writers = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int base = i * N_ITEMS;
+            writers[i] = new Thread(() -> {
+                for (int j = 0; j < N_ITEMS; j++) {
+                    map.put(base + j, j);
+                    if ((j & 1) == 0 && !map.remove(base + j)) {
+                        failed.set(true);
+                    }
+                }
+            });
+        }
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread reader = new Thread(() -> {
+            Random random = new Random();
+            while (!done.get()) {
+                int i = random.nextInt(1000);
+                Integer value = map.get(-i - 1);
+                if (value == null || value != i) {
+                    failed.set(true);
+                }
+            }
+        });
+        reader.start();
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        done.set(true);
+        reader.join();
+        assertFalse(failed.get());
+        assertEquals(1000 + NUM_THREADS * N_ITEMS / 2, map.size());
+        for (int i = 0; i < NUM_THREADS * N_ITEMS; i++) {
+            assertEquals((i & 1) == 1, map.contains(i));
+        }
+    }
+}
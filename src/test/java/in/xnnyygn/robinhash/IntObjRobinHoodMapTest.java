@@ -0,0 +1,43 @@
+package in.xnnyygn.robinhash;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntObjRobinHoodMapTest {
+
+    @Test
+    public void testPutGet() {
+        IntObjRobinHoodMap<String> map = new IntObjRobinHoodMap<>(4);
+        assertNull(map.put(1, "a"));
+        assertEquals("a", map.put(1, "b"));
+        assertEquals("b", map.get(1));
+        assertNull(map.get(2));
+        assertTrue(map.remove(1));
+        assertFalse(map.contains(1));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testRandom() {
+        IntObjRobinHoodMap<Integer> map = new IntObjRobinHoodMap<>(8, 0.5f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package in.xnnyygn.robinhash;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongLongRobinHoodMapTest {
+
+    @Test
+    public void testPutGet() {
+        LongLongRobinHoodMap map = new LongLongRobinHoodMap(4, 0.5f, -1L);
+        assertEquals(-1L, map.put(1L, 10L));
+        assertEquals(10L, map.put(1L, 20L));
+        assertEquals(20L, map.get(1L));
+        assertEquals(-1L, map.get(2L));
+        assertTrue(map.add(0L, 0L));
+        assertFalse(map.add(0L, 1L));
+        assertTrue(map.contains(0L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testRandom() {
+        LongLongRobinHoodMap map = new LongLongRobinHoodMap(8);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000) * 1024L;
+            if (random.nextBoolean()) {
+                Long previous = expected.put(key, (long) i);
+                assertEquals(previous != null ? previous : 0L, map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().longValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -2,6 +2,10 @@ package in.xnnyygn.robinhash;
 
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class RobinHoodHashTest {
@@ -19,4 +23,85 @@ public class RobinHoodHashTest {
         assertTrue(map.contains(1));
         assertFalse(map.contains(99));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPutGet() {
+        RobinHoodHash<Integer, Integer> map = new RobinHoodHash<>(4);
+        assertNull(map.put(1, 1));
+        assertEquals(1, map.put(1, 2).intValue());
+        assertEquals(2, map.get(1).intValue());
+        assertFalse(map.add(1, 3));
+        assertTrue(map.add(2, 3));
+        assertEquals(2, map.size());
+        assertNull(map.get(3));
+    }
+
+    @Test
+    public void testResize() {
+        RobinHoodHash<Integer, Integer> map = new RobinHoodHash<>(4, 0.5f);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        assertEquals(100, map.size());
+        assertEquals(256, map.capacity());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, map.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        // same hash code, keep a single long probe chain
+        RobinHoodHash<Key, Integer> map = new RobinHoodHash<>(16);
+        for (int i = 0; i < 8; i++) {
+            map.put(new Key(i, 1), i);
+        }
+        assertTrue(map.remove(new Key(2, 1)));
+        assertFalse(map.remove(new Key(2, 1)));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i != 2, map.contains(new Key(i, 1)));
+        }
+        assertEquals(7, map.size());
+    }
+
+    @Test
+    public void testRandom() {
+        RobinHoodHash<Integer, Integer> map = new RobinHoodHash<>(8);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    private static class Key {
+        private final int id;
+        private final int hashCode;
+
+        Key(int id, int hashCode) {
+            this.id = id;
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            return id == ((Key) o).id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}